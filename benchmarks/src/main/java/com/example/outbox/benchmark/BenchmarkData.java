@@ -0,0 +1,25 @@
+package com.example.outbox.benchmark;
+
+import com.example.outbox.domain.event.OrderCreatedEvent;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+// Dati di esempio condivisi dai benchmark
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static OrderCreatedEvent orderCreatedEvent(long orderId, int itemCount) {
+        List<OrderCreatedEvent.OrderItemDto> items = new ArrayList<>(itemCount);
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < itemCount; i++) {
+            BigDecimal price = BigDecimal.valueOf(1999 + i, 2);
+            items.add(new OrderCreatedEvent.OrderItemDto("Product " + i, 1 + i % 5, price));
+            total = total.add(price);
+        }
+        return new OrderCreatedEvent(orderId, "Customer " + orderId, total, items);
+    }
+}
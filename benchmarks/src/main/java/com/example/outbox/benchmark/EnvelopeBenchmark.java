@@ -0,0 +1,126 @@
+package com.example.outbox.benchmark;
+
+import com.example.outbox.claimcheck.ClaimCheck;
+import com.example.outbox.claimcheck.FileSystemBlobStore;
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.domain.event.OrderCreatedEvent;
+import com.example.outbox.messagging.DecodedEvent;
+import com.example.outbox.messagging.EnvelopeDecoder;
+import com.example.outbox.messagging.EventHandlerRegistry;
+import com.example.outbox.messagging.EventSerializer;
+import com.example.outbox.messagging.KafkaMessagePublisher;
+import com.example.outbox.messagging.LocalSchemaRegistry;
+import com.example.outbox.messagging.OutboundMessage;
+import com.example.outbox.messagging.PayloadCodec;
+import com.example.outbox.messagging.TopicRouter;
+import com.example.outbox.messagging.WireFormat;
+import com.example.outbox.util.JsonUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.record.TimestampType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costruzione del record Kafka in KafkaMessagePublisher e sua decodifica lato consumer
+ * con EnvelopeDecoder, nei due formati sul filo.
+ *
+ * Il KafkaTemplate non invia nulla: trattiene l'ultimo record e conferma subito,
+ * così viene misurato solo il lavoro dell'applicazione e non quello del producer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvelopeBenchmark {
+
+    @Param({"ENVELOPE", "HEADERS"})
+    private WireFormat wireFormat;
+
+    @Param({"1", "10"})
+    private int itemCount;
+
+    private CapturingKafkaTemplate kafkaTemplate;
+    private KafkaMessagePublisher publisher;
+    private OutboundMessage message;
+    private EnvelopeDecoder decoder;
+    private EventHandlerRegistry handlers;
+    private ConsumerRecord<String, byte[]> record;
+
+    @Setup
+    public void setUp() throws IOException {
+        OutboxProperties properties = new OutboxProperties();
+        properties.getMessaging().setWireFormat(wireFormat);
+        EventSerializer serializer = new EventSerializer(JsonUtils.getObjectMapper());
+        PayloadCodec payloadCodec = new PayloadCodec();
+        LocalSchemaRegistry schemaRegistry = new LocalSchemaRegistry();
+
+        kafkaTemplate = new CapturingKafkaTemplate();
+        publisher = new KafkaMessagePublisher(kafkaTemplate, new TopicRouter(properties), serializer, payloadCodec,
+                schemaRegistry, properties, new SimpleMeterRegistry());
+        String payload = serializer.serialize(BenchmarkData.orderCreatedEvent(42L, itemCount));
+        message = new OutboundMessage(UUID.randomUUID().toString(), "OrderCreated", "Order", "42",
+                payload, null, System.currentTimeMillis());
+
+        // Il record da decodificare è quello prodotto dal publisher
+        publisher.publish(message).join();
+        ProducerRecord<String, byte[]> sent = kafkaTemplate.last;
+        record = new ConsumerRecord<>(sent.topic(), 0, 0L, ConsumerRecord.NO_TIMESTAMP, TimestampType.NO_TIMESTAMP_TYPE,
+                -1, sent.value().length, sent.key(), sent.value(), sent.headers(), Optional.empty());
+
+        ClaimCheck claimCheck = new ClaimCheck(
+                new FileSystemBlobStore(Files.createTempDirectory("claim-check-bench")), properties);
+        decoder = new EnvelopeDecoder(serializer, payloadCodec, schemaRegistry, claimCheck);
+        handlers = new EventHandlerRegistry(serializer)
+                .register("OrderCreated", OrderCreatedEvent.class, event -> { });
+    }
+
+    @Benchmark
+    public ProducerRecord<String, byte[]> encode() {
+        publisher.publish(message);
+        return kafkaTemplate.last;
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        DecodedEvent event = decoder.decode(record, handlers);
+        return event.getEvent();
+    }
+
+    private static final class CapturingKafkaTemplate extends KafkaTemplate<String, byte[]> {
+        private ProducerRecord<String, byte[]> last;
+
+        CapturingKafkaTemplate() {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, byte[]>> send(ProducerRecord<String, byte[]> record) {
+            last = record;
+            return CompletableFuture.completedFuture(new SendResult<>(record, null));
+        }
+    }
+}
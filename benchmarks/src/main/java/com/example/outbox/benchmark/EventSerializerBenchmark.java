@@ -0,0 +1,55 @@
+package com.example.outbox.benchmark;
+
+import com.example.outbox.domain.event.OrderCreatedEvent;
+import com.example.outbox.messagging.EventSerializer;
+import com.example.outbox.util.JsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializzazione e deserializzazione di OrderCreatedEvent con EventSerializer,
+ * al variare del numero di righe dell'ordine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventSerializerBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int itemCount;
+
+    private EventSerializer serializer;
+    private OrderCreatedEvent event;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        serializer = new EventSerializer(JsonUtils.getObjectMapper());
+        event = BenchmarkData.orderCreatedEvent(42L, itemCount);
+        json = serializer.serialize(event);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return serializer.serialize(event);
+    }
+
+    @Benchmark
+    public OrderCreatedEvent deserialize() {
+        return serializer.deserialize(json, OrderCreatedEvent.class);
+    }
+}
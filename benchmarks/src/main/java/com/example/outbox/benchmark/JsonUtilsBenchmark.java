@@ -0,0 +1,58 @@
+package com.example.outbox.benchmark;
+
+import com.example.outbox.util.JsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// JsonUtils.mergeJson su documenti con un numero crescente di proprietà di primo livello
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilsBenchmark {
+
+    @Param({"5", "50"})
+    private int fieldCount;
+
+    private String base;
+    private String override;
+
+    @Setup
+    public void setUp() {
+        StringBuilder first = new StringBuilder("{");
+        StringBuilder second = new StringBuilder("{");
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                first.append(',');
+            }
+            first.append("\"field").append(i).append("\":\"value").append(i).append('"');
+            // Il secondo documento sovrascrive una proprietà su due
+            if (i % 2 == 0) {
+                if (second.length() > 1) {
+                    second.append(',');
+                }
+                second.append("\"field").append(i).append("\":").append(i);
+            }
+        }
+        base = first.append('}').toString();
+        override = second.append('}').toString();
+    }
+
+    @Benchmark
+    public String mergeJson() {
+        return JsonUtils.mergeJson(base, override);
+    }
+}
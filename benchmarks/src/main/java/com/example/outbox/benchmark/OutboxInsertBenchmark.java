@@ -0,0 +1,82 @@
+package com.example.outbox.benchmark;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.outbox.model.OutboxEvent;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import com.example.outbox.util.id.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generazione degli ID e velocità di inserimento nell'outbox con UUIDv7 e UUID casuali.
+ *
+ * La tabella cresce per tutto il trial: con ID casuali gli inserimenti si spargono
+ * sull'indice della chiave primaria, con UUIDv7 si accodano in fondo. La differenza
+ * si vede davvero su PostgreSQL con una tabella più grande della cache (vedi
+ * {@link RelayBenchmarkContext} per cambiare database).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OutboxInsertBenchmark {
+    private static final int ROWS_PER_TRANSACTION = 100;
+
+    @Param({"UUID_V7", "RANDOM"})
+    private OutboxProperties.IdStrategy idStrategy;
+
+    private ConfigurableApplicationContext context;
+    private IdGenerator idGenerator;
+    private OutboxRepository outboxRepository;
+    private TransactionTemplate transactionTemplate;
+    private long nextAggregateId;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = RelayBenchmarkContext.start("outbox.id.generator=" + idStrategy);
+        idGenerator = context.getBean(IdGenerator.class);
+        outboxRepository = context.getBean(OutboxRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public UUID nextId() {
+        return idGenerator.nextId();
+    }
+
+    // Un'operazione = una transazione con ROWS_PER_TRANSACTION righe
+    @Benchmark
+    public void insert() {
+        List<OutboxEvent> events = new ArrayList<>(ROWS_PER_TRANSACTION);
+        for (int i = 0; i < ROWS_PER_TRANSACTION; i++) {
+            events.add(new OutboxEvent("Order", String.valueOf(nextAggregateId++), "OrderCreated", "{}"));
+        }
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.saveAll(events));
+    }
+}
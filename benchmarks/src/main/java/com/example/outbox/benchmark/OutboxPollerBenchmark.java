@@ -0,0 +1,86 @@
+package com.example.outbox.benchmark;
+
+import com.example.outbox.messagging.EventSerializer;
+import com.example.outbox.outbox.model.OutboxEvent;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import com.example.outbox.outbox.service.OutboxPoller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Un ciclo completo di OutboxPoller.pollAndPublish su H2: lettura del lotto,
+ * pubblicazione attraverso le corsie, attesa degli ack e marcatura come processati.
+ *
+ * Prima di ogni invocazione vengono inseriti batchSize eventi, fuori dalla misura:
+ * il ciclo dura millisecondi, quindi il costo del setup per invocazione è trascurabile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutboxPollerBenchmark {
+
+    @Param({"50", "500"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private OutboxPoller poller;
+    private OutboxRepository outboxRepository;
+    private TransactionTemplate transactionTemplate;
+    private String payload;
+    private long nextAggregateId;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = RelayBenchmarkContext.start();
+        poller = context.getBean(OutboxPoller.class);
+        outboxRepository = context.getBean(OutboxRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        payload = context.getBean(EventSerializer.class).serialize(BenchmarkData.orderCreatedEvent(42L, 3));
+    }
+
+    @Setup(Level.Invocation)
+    public void insertBatch() {
+        List<OutboxEvent> events = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            events.add(new OutboxEvent("Order", String.valueOf(nextAggregateId++), "OrderCreated", payload));
+        }
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.saveAll(events));
+    }
+
+    // Le righe processate non pesano sulle letture successive
+    @TearDown(Level.Iteration)
+    public void purgeProcessed() {
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.deleteAllInBatch());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public int pollAndPublish() {
+        return poller.pollAndPublish(batchSize);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.outbox.benchmark;
+
+import com.example.outbox.config.OutboxConfig;
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.EventSerializer;
+import com.example.outbox.messagging.MessagePublisher;
+import com.example.outbox.outbox.model.OutboxEvent;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import com.example.outbox.outbox.service.OutboxLaneDispatcher;
+import com.example.outbox.outbox.service.OutboxLeaseManager;
+import com.example.outbox.outbox.service.OutboxPoller;
+import com.example.outbox.outbox.service.OutboxRetryHandler;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Contesto Spring ridotto per i benchmark del relay: repository dell'outbox su H2,
+ * poller con corsie e retry come in produzione, nessun listener o scheduler,
+ * e un MessagePublisher in memoria che conferma subito ogni messaggio.
+ *
+ * Le proprietà passate qui sono solo valori di default: per misurare su PostgreSQL
+ * basta sovrascriverle nella JVM del fork, ad esempio
+ * -jvmArgsAppend "-Dspring.datasource.url=jdbc:postgresql://localhost/outbox".
+ */
+final class RelayBenchmarkContext {
+
+    private RelayBenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        List<String> defaults = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:outbox-bench;MODE=PostgreSQL",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                "spring.jpa.properties.hibernate.order_inserts=true",
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN"));
+        defaults.addAll(List.of(properties));
+        return new SpringApplicationBuilder(RelayConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties(defaults.toArray(String[]::new))
+                .run();
+    }
+
+    @Configuration
+    @EnableAutoConfiguration(exclude = KafkaAutoConfiguration.class)
+    @EntityScan(basePackageClasses = OutboxEvent.class)
+    @EnableJpaRepositories(basePackageClasses = OutboxRepository.class)
+    @EnableConfigurationProperties(OutboxProperties.class)
+    @Import({OutboxConfig.class, EventSerializer.class, OutboxLeaseManager.class, OutboxLaneDispatcher.class,
+            OutboxRetryHandler.class, OutboxPoller.class})
+    static class RelayConfig {
+
+        @Bean
+        MessagePublisher messagePublisher() {
+            return message -> CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package com.example.outbox.api;
 
 import com.example.outbox.domain.model.Order;
+import com.example.outbox.service.OrderGroupCommitter;
 import com.example.outbox.service.OrderService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller REST per la gestione degli ordini.
@@ -20,34 +32,99 @@ import java.util.Optional;
 @RequiredArgsConstructor
 @Slf4j
 public class OrderController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
     private final OrderService orderService;
+    private final OrderGroupCommitter groupCommitter;
+    private final ObjectMapper objectMapper;
 
     /**
      * Crea un nuovo ordine.
      * Questo metodo salva l'ordine nel database e pubblica un evento
-     * utilizzando il pattern Outbox.
+     * utilizzando il pattern Outbox. Con il group commit attivo la risposta
+     * arriva dopo il commit della transazione condivisa con le richieste concorrenti.
      *
      * @param order L'ordine da creare
      * @return L'ordine creato con l'ID assegnato
      */
     @PostMapping
-    public ResponseEntity<Order> createOrder(@RequestBody Order order) {
+    public CompletableFuture<ResponseEntity<Order>> createOrder(@RequestBody Order order) {
         log.info("Ricevuta richiesta di creazione ordine: {}", order);
-        Order createdOrder = orderService.createOrder(order);
-        return new ResponseEntity<>(createdOrder, HttpStatus.CREATED);
+        return groupCommitter.submit(order)
+                .thenApply(createdOrder -> new ResponseEntity<>(createdOrder, HttpStatus.CREATED));
     }
 
     /**
-     * Recupera tutti gli ordini.
+     * Crea più ordini in un'unica transazione (ad esempio per gli import notturni).
+     * Ordini, righe ed eventi dell'outbox vengono inseriti con batch JDBC.
      *
-     * @return Lista di tutti gli ordini
+     * @param orders Gli ordini da creare
+     * @return Gli ordini creati con gli ID assegnati
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<Order>> createOrders(@RequestBody List<Order> orders) {
+        log.info("Ricevuta richiesta di creazione di {} ordini", orders.size());
+        List<Order> createdOrders = orderService.createOrders(orders);
+        return new ResponseEntity<>(createdOrders, HttpStatus.CREATED);
+    }
+
+    /**
+     * Recupera una pagina di ordini in ordine di ID (paginazione keyset).
+     * Se la pagina è piena, l'header Link (rel="next") contiene l'URL della pagina successiva,
+     * con after uguale all'ultimo ID restituito.
+     *
+     * @param after Cursore: vengono restituiti gli ordini con ID maggiore (0 per la prima pagina)
+     * @param limit Numero massimo di ordini, al più 1000
+     * @return Gli ordini della pagina, con le righe
      */
     @GetMapping
-    public ResponseEntity<List<Order>> getAllOrders() {
-        log.info("Ricevuta richiesta per tutti gli ordini");
-        List<Order> orders = orderService.findAllOrders();
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<List<Order>> getOrders(@RequestParam(defaultValue = "0") long after,
+                                                 @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        log.info("Ricevuta richiesta per {} ordini dopo l'ID {}", pageSize, after);
+        List<Order> orders = orderService.findOrdersAfter(after, pageSize);
+        if (orders.size() < pageSize) {
+            return ResponseEntity.ok(orders);
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", orders.get(orders.size() - 1).getId())
+                .replaceQueryParam("limit", pageSize)
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(orders);
+    }
+
+    /**
+     * Esporta tutti gli ordini come array JSON, scritto direttamente nella risposta
+     * mentre gli ordini vengono letti dal database: la memoria usata non dipende
+     * dal numero di ordini.
+     *
+     * @return Il corpo della risposta in streaming
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportOrders() {
+        log.info("Ricevuta richiesta di export degli ordini");
+        // Lo svuotamento avviene al riempimento del buffer della risposta, non dopo ogni ordine
+        ObjectWriter orderWriter = objectMapper.writerFor(Order.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                orderService.exportOrders(order -> {
+                    try {
+                        orderWriter.writeValue(generator, order);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     /**
@@ -0,0 +1,32 @@
+package com.example.outbox.claimcheck;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Archivio dei payload troppo grandi per l'outbox e per Kafka (claim-check).
+ * Il riferimento restituito da {@link #put} viaggia al posto del payload.
+ */
+public interface BlobStore {
+
+    /**
+     * Salva il contenuto e ne restituisce il riferimento.
+     * Contenuti identici producono lo stesso riferimento; riusare un blob esistente
+     * ne rinnova la scadenza, perché c'è un nuovo evento che lo cita.
+     */
+    String put(byte[] content) throws IOException;
+
+    byte[] get(String reference) throws IOException;
+
+    /**
+     * Elimina i blob più vecchi della retention, tranne quelli ancora citati; gli archivi
+     * con politiche di scadenza proprie possono lasciarlo vuoto.
+     *
+     * @param inUse Riferimenti ancora presenti nell'outbox o nella dead letter
+     * @return Il numero di blob eliminati
+     */
+    default int purgeOlderThan(Duration retention, Set<String> inUse) throws IOException {
+        return 0;
+    }
+}
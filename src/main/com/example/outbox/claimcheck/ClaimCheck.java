@@ -0,0 +1,108 @@
+package com.example.outbox.claimcheck;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.outbox.repository.OutboxDeadLetterRepository;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Claim-check per i payload troppo grandi.
+ *
+ * In scrittura, i payload oltre la soglia vengono salvati nel {@link BlobStore}
+ * e nell'outbox (e quindi nel messaggio) viaggia solo il riferimento.
+ * In lettura il consumer risolve il riferimento quando serve, attraverso una
+ * piccola cache LRU: le riletture dello stesso messaggio non toccano l'archivio.
+ * La purga non elimina i blob ancora citati da eventi da pubblicare o in dead letter.
+ */
+@Component
+public class ClaimCheck {
+    private static final Logger log = LoggerFactory.getLogger(ClaimCheck.class);
+
+    private final BlobStore blobStore;
+    private final OutboxRepository outboxRepository;
+    private final OutboxDeadLetterRepository deadLetterRepository;
+    private final boolean enabled;
+    private final int threshold;
+    private final Duration retention;
+    private final Map<String, byte[]> cache;
+
+    @Autowired
+    public ClaimCheck(BlobStore blobStore, OutboxRepository outboxRepository,
+                      OutboxDeadLetterRepository deadLetterRepository, OutboxProperties properties) {
+        this.blobStore = blobStore;
+        this.outboxRepository = outboxRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.enabled = properties.getClaimCheck().isEnabled();
+        this.threshold = properties.getClaimCheck().getThreshold();
+        this.retention = properties.getClaimCheck().getRetention();
+        int cacheSize = properties.getClaimCheck().getCacheSize();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return Il riferimento al payload salvato nell'archivio, oppure null se il payload resta inline
+     */
+    public String offload(String payload) {
+        if (!enabled) {
+            return null;
+        }
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < threshold) {
+            return null;
+        }
+        try {
+            return blobStore.put(bytes);
+        } catch (IOException e) {
+            // Il chiamante è nella transazione dell'ordine: meglio fallire che perdere il payload
+            throw new UncheckedIOException("Error storing claim-check payload", e);
+        }
+    }
+
+    public byte[] resolve(String reference) throws IOException {
+        synchronized (cache) {
+            byte[] cached = cache.get(reference);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] content = blobStore.get(reference);
+        synchronized (cache) {
+            cache.put(reference, content);
+        }
+        return content;
+    }
+
+    // I blob devono sopravvivere finché i consumer possono ancora rileggere il messaggio
+    @Scheduled(cron = "${outbox.claim-check.purge-cron:0 30 3 * * ?}")
+    public void purgeExpired() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // Letti prima di scorrere l'archivio: i blob citati dopo hanno la data di modifica rinnovata da put
+            Set<String> inUse = new HashSet<>(outboxRepository.findUnprocessedPayloadRefs());
+            inUse.addAll(deadLetterRepository.findPayloadRefs());
+            blobStore.purgeOlderThan(retention, inUse);
+        } catch (IOException e) {
+            log.error("Failed to purge claim-check blobs", e);
+        }
+    }
+}
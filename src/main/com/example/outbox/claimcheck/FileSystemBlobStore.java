@@ -0,0 +1,120 @@
+package com.example.outbox.claimcheck;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * BlobStore su filesystem locale, indirizzato per contenuto.
+ *
+ * Il riferimento è lo SHA-256 del contenuto ("sha256:<hex>"); il file si trova in
+ * una sottodirectory con i primi due caratteri dell'hash, per non avere milioni di
+ * file nella stessa directory. La scrittura passa da un file temporaneo rinominato
+ * in modo atomico, quindi un lettore non vede mai un blob incompleto, e riscrivere
+ * lo stesso contenuto non ha effetti, se non rinnovare la data di modifica su cui si
+ * basa la purga.
+ */
+public class FileSystemBlobStore implements BlobStore {
+    private static final Logger log = LoggerFactory.getLogger(FileSystemBlobStore.class);
+    private static final String PREFIX = "sha256:";
+
+    private final Path root;
+
+    public FileSystemBlobStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public String put(byte[] content) throws IOException {
+        String hash = sha256(content);
+        Path target = pathOf(hash);
+        if (Files.exists(target)) {
+            try {
+                // Un nuovo evento cita il blob: la retention riparte da adesso
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                return PREFIX + hash;
+            } catch (NoSuchFileException e) {
+                // Eliminato dalla purga nel frattempo: va riscritto
+            }
+        }
+
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Stesso contenuto scritto in parallelo da un altro thread
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return PREFIX + hash;
+    }
+
+    @Override
+    public byte[] get(String reference) throws IOException {
+        if (!reference.startsWith(PREFIX)) {
+            throw new IOException("Unsupported blob reference: " + reference);
+        }
+        return Files.readAllBytes(pathOf(reference.substring(PREFIX.length())));
+    }
+
+    @Override
+    public int purgeOlderThan(Duration retention, Set<String> inUse) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        Instant cutoff = Instant.now().minus(retention);
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (inUse.contains(PREFIX + file.getFileName()) || !isExpired(file, cutoff)) {
+                    continue;
+                }
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        log.info("Deleted {} expired claim-check blobs", deleted);
+        return deleted;
+    }
+
+    // Un put concorrente può aver appena rinnovato il blob
+    private static boolean isExpired(Path file, Instant cutoff) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private Path pathOf(String hash) throws IOException {
+        if (hash.length() != 64 || !hash.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IOException("Invalid blob hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,16 +1,67 @@
 package com.example.outbox.config;
 
+import com.example.outbox.claimcheck.BlobStore;
+import com.example.outbox.claimcheck.FileSystemBlobStore;
+import com.example.outbox.util.compression.PayloadCompressor;
+import com.example.outbox.util.compression.PayloadCompressors;
+import com.example.outbox.util.id.IdGenerator;
+import com.example.outbox.util.id.IdGenerators;
+import com.example.outbox.util.id.RandomUuidGenerator;
+import com.example.outbox.util.id.UuidV7Generator;
+import com.example.outbox.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.nio.file.Path;
+
 @Configuration
 @EnableScheduling
+@EnableConfigurationProperties(OutboxProperties.class)
 public class OutboxConfig {
 
+    // Unico ObjectMapper dell'applicazione: lo stesso usato da JsonUtils,
+    // iniettato in EventSerializer e da lì in publisher e consumer
     @Bean
-    public ObjectMapper objectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    public ObjectMapper objectMapper(OutboxProperties properties) {
+        ObjectMapper mapper = JsonUtils.getObjectMapper();
+        if (properties.getSerialization().isBlackbird()) {
+            // Sostituisce la reflection con accessori generati tramite LambdaMetafactory
+            mapper.registerModule(new BlackbirdModule());
+        }
         return mapper;
     }
 
+    @Bean
+    public IdGenerator idGenerator(OutboxProperties properties) {
+        IdGenerator generator = properties.getId().getGenerator() == OutboxProperties.IdStrategy.RANDOM
+                ? new RandomUuidGenerator()
+                : new UuidV7Generator();
+        // Rende lo stesso generatore disponibile a entità ed eventi di dominio
+        IdGenerators.use(generator);
+        return generator;
+    }
+
+    @Bean
+    public PayloadCompressor payloadCompressor(OutboxProperties properties) {
+        PayloadCompressor compressor = new PayloadCompressor(
+                properties.getCompression().getAlgorithm(),
+                properties.getCompression().getThreshold());
+        // Le entità dell'outbox comprimono il payload alla creazione
+        PayloadCompressors.use(compressor);
+        return compressor;
+    }
+
+    // Blob store del claim-check: un'altra implementazione (ad esempio un object storage) sostituisce questa
+    @Bean
+    @ConditionalOnMissingBean(BlobStore.class)
+    public BlobStore blobStore(OutboxProperties properties) {
+        return new FileSystemBlobStore(Path.of(properties.getClaimCheck().getDirectory()));
+    }
+
     // Altri bean di configurazione...
 }
\ No newline at end of file
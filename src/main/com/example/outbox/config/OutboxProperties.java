@@ -0,0 +1,403 @@
+package com.example.outbox.config;
+
+import com.example.outbox.messagging.MessageTransport;
+import com.example.outbox.messagging.PayloadEncoding;
+import com.example.outbox.messagging.RoutingKey;
+import com.example.outbox.messagging.WireFormat;
+import com.example.outbox.util.compression.CompressionAlgorithm;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Proprietà di configurazione del pattern Outbox (prefisso "outbox").
+ * Raccoglie in un unico punto i parametri del relay, del poller e del cleaner.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "outbox")
+public class OutboxProperties {
+
+    private final Relay relay = new Relay();
+    private final Poller poller = new Poller();
+    private final DirectDispatch directDispatch = new DirectDispatch();
+    private final Storage storage = new Storage();
+    private final Cleaner cleaner = new Cleaner();
+    private final Id id = new Id();
+    private final Serialization serialization = new Serialization();
+    private final Messaging messaging = new Messaging();
+    private final Consumer consumer = new Consumer();
+    private final GroupCommit groupCommit = new GroupCommit();
+    private final Compression compression = new Compression();
+    private final ClaimCheck claimCheck = new ClaimCheck();
+    private final LoadTest loadTest = new LoadTest();
+    private final Routing routing = new Routing();
+
+    /**
+     * Configurazione del relay che pubblica gli eventi dell'outbox sul broker.
+     */
+    @Getter
+    @Setter
+    public static class Relay {
+        /**
+         * SINGLE: un solo nodo legge l'outbox (comportamento storico).
+         * CLUSTERED: più nodi si spartiscono le righe tramite lease.
+         */
+        private RelayMode mode = RelayMode.SINGLE;
+
+        /** Identificativo del nodo usato come proprietario dei lease; se vuoto viene generato. */
+        private String nodeId;
+
+        /**
+         * Durata del lease: scaduto questo tempo le righe possono essere riprese da un altro nodo.
+         * Deve superare ackTimeout più il delivery.timeout.ms del producer.
+         */
+        private Duration leaseDuration = Duration.ofSeconds(60);
+
+        /** Numero massimo di invii in attesa di ack dal broker (finestra della pipeline). */
+        private int maxInFlight = 256;
+
+        /**
+         * Tempo massimo di attesa degli ack di un ciclo di polling. Gli invii ancora in volo
+         * vengono chiusi nei cicli successivi, senza pubblicare altri lotti nel frattempo.
+         */
+        private Duration ackTimeout = Duration.ofSeconds(30);
+
+        /** Numero di ack accumulati oltre il quale gli eventi vengono marcati come processati, con un commit per blocco. */
+        private int markBatchSize = 50;
+
+        /** Numero di corsie parallele: gli eventi di uno stesso aggregato usano sempre la stessa corsia. */
+        private int lanes = 4;
+
+        /** Numero massimo di lotti in attesa su ciascuna corsia. */
+        private int laneQueueDepth = 16;
+
+        /**
+         * Tentativi dopo i quali un evento con un errore non recuperabile (serializzazione,
+         * record troppo grande, topic non valido) passa nella tabella outbox_dead_letter.
+         * Gli errori del broker vengono riprovati senza limite.
+         */
+        private int maxAttempts = 3;
+
+        /** Attesa prima del secondo tentativo; raddoppia a ogni fallimento successivo. */
+        private Duration retryBackoff = Duration.ofSeconds(1);
+
+        /** Attesa massima tra due tentativi. */
+        private Duration retryMaxBackoff = Duration.ofMinutes(10);
+    }
+
+    /**
+     * Configurazione dello scheduler adattivo del poller.
+     */
+    @Getter
+    @Setter
+    public static class Poller {
+        /** Attesa minima tra due cicli quando l'ultimo lotto non era pieno. */
+        private Duration minDelay = Duration.ofMillis(10);
+
+        /** Attesa massima raggiunta con il backoff esponenziale quando l'outbox è vuota. */
+        private Duration maxDelay = Duration.ofSeconds(5);
+
+        /** Dimensione iniziale del lotto letto dall'outbox. */
+        private int batchSize = 100;
+
+        private int minBatchSize = 10;
+
+        private int maxBatchSize = 1000;
+
+        /** Durata obiettivo di un ciclo: oltre questa soglia il lotto viene dimezzato. */
+        private Duration targetLatency = Duration.ofMillis(100);
+
+        /**
+         * POLL: solo polling con backoff.
+         * NOTIFY: il relay viene risvegliato dalle notifiche del database (LISTEN/NOTIFY o trigger H2).
+         */
+        private WakeupMode wakeup = WakeupMode.POLL;
+
+        /** Con le notifiche attive, intervallo di polling di riserva per i segnali persi. */
+        private Duration notifyFallbackDelay = Duration.ofSeconds(60);
+    }
+
+    /**
+     * Configurazione della pubblicazione diretta dopo il commit.
+     */
+    @Getter
+    @Setter
+    public static class DirectDispatch {
+        private boolean enabled = false;
+
+        /** Età minima delle righe lette dal poller, per non competere con il percorso veloce. */
+        private Duration gracePeriod = Duration.ofSeconds(10);
+
+        /** Intervallo con cui gli ack del percorso veloce vengono marcati in batch. */
+        private Duration flushInterval = Duration.ofMillis(100);
+    }
+
+    /**
+     * Configurazione dello storage e della retention della tabella outbox.
+     */
+    @Getter
+    @Setter
+    public static class Storage {
+        /**
+         * TABLE: tabella singola ripulita da OutboxCleaner.
+         * PARTITIONED: tabella partizionata per giorno (outbox-partitioned.sql), retention a partizioni.
+         */
+        private StorageMode mode = StorageMode.TABLE;
+
+        /** Per quanto tempo vengono conservati gli eventi già processati. */
+        private Duration retention = Duration.ofDays(7);
+
+        /** Numero di partizioni giornaliere future create in anticipo. */
+        private int premakeDays = 3;
+    }
+
+    /**
+     * Configurazione della pulizia incrementale (modalità TABLE).
+     * La frequenza è data da outbox.cleaner.cron, la retention da outbox.storage.retention.
+     */
+    @Getter
+    @Setter
+    public static class Cleaner {
+        /** Righe eliminate per transazione. */
+        private int chunkSize = 500;
+
+        /** Budget massimo di righe eliminate al secondo. */
+        private int rowsPerSecond = 5000;
+
+        /** Oltre questo numero di eventi non processati la pulizia si interrompe. */
+        private long maxBacklog = 10000;
+
+        /** Un blocco più lento di questa soglia indica un database sotto carico. */
+        private Duration maxChunkLatency = Duration.ofMillis(500);
+
+        /** Pausa concessa al database dopo un blocco lento. */
+        private Duration pauseDuration = Duration.ofSeconds(5);
+    }
+
+    /**
+     * Configurazione del generatore di ID per righe dell'outbox, eventi e messaggi.
+     */
+    @Getter
+    @Setter
+    public static class Id {
+        /** UUID_V7: ordinati nel tempo (default). RANDOM: UUID casuali versione 4. */
+        private IdStrategy generator = IdStrategy.UUID_V7;
+    }
+
+    /**
+     * Configurazione della serializzazione JSON condivisa.
+     */
+    @Getter
+    @Setter
+    public static class Serialization {
+        /** Abilita il modulo Jackson Blackbird (accessori generati al posto della reflection). */
+        private boolean blackbird = false;
+    }
+
+    /**
+     * Configurazione del formato dei messaggi su Kafka.
+     */
+    @Getter
+    @Setter
+    public static class Messaging {
+        /** KAFKA: pubblica sul broker. FILE: accoda i messaggi a un file locale. */
+        private MessageTransport transport = MessageTransport.KAFKA;
+
+        /** File dei messaggi con il trasporto FILE. */
+        private String file = "outbox-messages/messages.jsonl";
+
+        /** Con il trasporto FILE, un fsync per lotto prima di confermare i messaggi. */
+        private boolean fileSync = true;
+
+        /** ENVELOPE: metadati e payload in un documento JSON. HEADERS: metadati negli header Kafka. */
+        private WireFormat wireFormat = WireFormat.ENVELOPE;
+
+        /** Codifica del payload nel formato HEADERS (JSON, SMILE, CBOR). */
+        private PayloadEncoding payloadEncoding = PayloadEncoding.JSON;
+    }
+
+    /**
+     * Configurazione del consumer degli eventi.
+     */
+    @Getter
+    @Setter
+    public static class Consumer {
+        /** Avvia i listener Kafka; disattivati nelle prove di carico con il broker in memoria. */
+        private boolean listenersEnabled = true;
+
+        /** Riceve interi lotti di record e li elabora in parallelo per chiave. */
+        private boolean batchMode = false;
+
+        /** Numero di worker paralleli in modalità batch: i record con la stessa chiave usano lo stesso worker. */
+        private int workers = 8;
+
+        /** Numero massimo di messageId tenuti nella cache dei messaggi già elaborati. */
+        private int dedupCacheSize = 100_000;
+
+        /** Permanenza di un messageId nella cache. */
+        private Duration dedupCacheTtl = Duration.ofHours(1);
+
+        /** Intervallo di scrittura dei messageId elaborati in modalità record. */
+        private Duration dedupFlushInterval = Duration.ofMillis(200);
+
+        /** Permanenza dei messageId nella tabella processed_messages. */
+        private Duration dedupRetention = Duration.ofDays(7);
+
+        /**
+         * Tentativi della modalità record, tramite i topic di retry (letti anche da @RetryableTopic).
+         * I valori sono numerici perché vengono risolti dentro l'annotazione.
+         */
+        private int retryAttempts = 4;
+        private long retryDelayMs = 1000;
+        private double retryMultiplier = 2.0;
+        private long retryMaxDelayMs = 60_000;
+
+        /** Tentativi sul posto in modalità batch prima dell'inoltro al topic di dead letter. */
+        private int batchRetryAttempts = 3;
+
+        /** Attesa prima del secondo tentativo in modalità batch; raddoppia a ogni fallimento. */
+        private Duration batchRetryBackoff = Duration.ofMillis(100);
+    }
+
+    /**
+     * Configurazione del group commit per la creazione degli ordini.
+     */
+    @Getter
+    @Setter
+    public static class GroupCommit {
+        /** Raccoglie le richieste concorrenti di creazione ordine in un'unica transazione. */
+        private boolean enabled = false;
+
+        /** Finestra di raccolta, a partire dalla prima richiesta del gruppo. */
+        private Duration window = Duration.ofMillis(5);
+
+        /** Numero massimo di ordini per transazione: raggiunto il limite il gruppo parte subito. */
+        private int maxBatchSize = 100;
+
+        /** Richieste in attesa di commit oltre le quali i chiamanti vengono frenati. */
+        private int queueCapacity = 1000;
+
+        /** Attesa massima di un chiamante con la coda piena, poi la richiesta viene rifiutata. */
+        private Duration enqueueTimeout = Duration.ofSeconds(1);
+    }
+
+    /**
+     * Compressione dei payload salvati nell'outbox.
+     */
+    @Getter
+    @Setter
+    public static class Compression {
+        /** NONE lascia tutti i payload in chiaro nella colonna JSONB. */
+        private CompressionAlgorithm algorithm = CompressionAlgorithm.NONE;
+
+        /** Dimensione in byte del JSON oltre la quale il payload viene compresso. */
+        private int threshold = 1024;
+    }
+
+    /**
+     * Claim-check per i payload troppo grandi per l'outbox e per Kafka.
+     */
+    @Getter
+    @Setter
+    public static class ClaimCheck {
+        /** Sposta nel blob store i payload oltre la soglia. */
+        private boolean enabled = false;
+
+        /** Dimensione in byte del JSON oltre la quale il payload va nel blob store. */
+        private int threshold = 256 * 1024;
+
+        /** Directory del blob store su filesystem. */
+        private String directory = "claim-check";
+
+        /** Numero di payload risolti tenuti in cache dal consumer. */
+        private int cacheSize = 64;
+
+        /** Permanenza dei blob: deve superare la retention dei topic Kafka. */
+        private Duration retention = Duration.ofDays(14);
+    }
+
+    /**
+     * Instradamento dei messaggi: topic, chiave ed eventuale partizione per tipo di aggregato e di evento.
+     * Senza una regola, il topic è il nome semplice dell'aggregato al plurale (Order -> orders).
+     */
+    @Getter
+    @Setter
+    public static class Routing {
+        /** Chiave dei record per le regole che non la indicano. */
+        private RoutingKey defaultKey = RoutingKey.AGGREGATE_ID;
+
+        /** Regole di instradamento; quella con eventType vince su quella del solo aggregato. */
+        private List<Route> routes = new ArrayList<>();
+
+        @Getter
+        @Setter
+        public static class Route {
+            /** Tipo di aggregato, con il nome completo della classe o solo quello semplice. */
+            private String aggregateType;
+
+            /** Tipo di evento; se assente la regola vale per tutti gli eventi dell'aggregato. */
+            private String eventType;
+
+            private String topic;
+
+            /** Chiave dei record; se assente vale defaultKey. */
+            private RoutingKey key;
+
+            /** Partizione fissa; se assente la sceglie il producer dalla chiave. */
+            private Integer partition;
+        }
+    }
+
+    /**
+     * Generatore di carico del profilo loadtest.
+     */
+    @Getter
+    @Setter
+    public static class LoadTest {
+        /** Ordini al secondo richiesti, su tutti i thread. */
+        private int rate = 500;
+
+        /** Thread che creano ordini in parallelo. */
+        private int concurrency = 16;
+
+        /** Durata della prova. */
+        private Duration duration = Duration.ofMinutes(1);
+
+        /** Righe per ordine. */
+        private int itemsPerOrder = 3;
+
+        /** Thread del consumer in memoria; gli eventi dello stesso aggregato vanno sempre allo stesso thread. */
+        private int consumerThreads = 4;
+
+        /** Intervallo dei report intermedi. */
+        private Duration reportInterval = Duration.ofSeconds(5);
+
+        /** Chiude l'applicazione a fine prova, dopo il report finale. */
+        private boolean exitOnFinish = true;
+    }
+
+    public enum IdStrategy {
+        UUID_V7,
+        RANDOM
+    }
+
+    public enum StorageMode {
+        TABLE,
+        PARTITIONED
+    }
+
+    public enum WakeupMode {
+        POLL,
+        NOTIFY
+    }
+
+    public enum RelayMode {
+        SINGLE,
+        CLUSTERED
+    }
+}
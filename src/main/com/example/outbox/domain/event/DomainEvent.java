@@ -1,12 +1,14 @@
 package com.example.outbox.domain.event;
 
+import com.example.outbox.util.id.IdGenerators;
+
 // Classe base per gli eventi di dominio
 public abstract class DomainEvent {
     private final UUID eventId;
     private final LocalDateTime timestamp;
 
     protected DomainEvent() {
-        this.eventId = UUID.randomUUID();
+        this.eventId = IdGenerators.nextId();
         this.timestamp = LocalDateTime.now();
     }
 
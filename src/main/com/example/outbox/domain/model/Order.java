@@ -4,8 +4,11 @@ package com.example.outbox.domain.model;
 @Entity
 @Table(name = "orders")
 public class Order {
+    // Con IDENTITY Hibernate deve eseguire ogni INSERT subito per leggere l'ID e disattiva il batching JDBC:
+    // la sequenza con optimizer pooled riserva gli ID a blocchi e permette INSERT raggruppati
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     private String customerName;
@@ -0,0 +1,65 @@
+package com.example.outbox.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// Riga di un ordine
+@Entity
+@Table(name = "order_items")
+public class OrderItem {
+    // Sequenza con optimizer pooled: gli ID vengono riservati a blocchi senza un round trip
+    // per ogni riga, e gli INSERT possono essere raggruppati in batch JDBC
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_seq", allocationSize = 50)
+    private Long id;
+
+    private String productName;
+    private int quantity;
+    private BigDecimal price;
+
+    // Riferimento all'ordine escluso dal JSON per evitare il ciclo ordine -> righe -> ordine
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id")
+    private Order order;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+}
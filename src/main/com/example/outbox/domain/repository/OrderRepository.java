@@ -1,9 +1,37 @@
 package com.example.outbox.domain.repository;
 
 import com.example.outbox.domain.model.Order;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 // Repository per gli ordini
 public interface OrderRepository extends JpaRepository<Order, Long> {
     // Metodi standard forniti da Spring Data JPA
-}
 
+    // Paginazione keyset: una pagina di ID successivi al cursore, servita dall'indice della chiave primaria.
+    // Il LIMIT non può stare sulla query con JOIN FETCH, che Hibernate paginerebbe in memoria
+    @Query("SELECT o.id FROM com.example.outbox.domain.model.Order o WHERE o.id > :afterId ORDER BY o.id ASC LIMIT :limit")
+    List<Long> findIdsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    // Ordini di una pagina con le righe caricate nella stessa query, senza una SELECT per ordine
+    @Query("SELECT DISTINCT o FROM com.example.outbox.domain.model.Order o LEFT JOIN FETCH o.items " +
+            "WHERE o.id IN :ids ORDER BY o.id ASC")
+    List<Order> findWithItemsByIdIn(@Param("ids") List<Long> ids);
+
+    // Export completo: le righe arrivano dal cursore JDBC a blocchi di fetch size, con le righe
+    // d'ordine in JOIN FETCH (ordinate per ID, così Hibernate ricompone un ordine alla volta).
+    // Va consumato dentro una transazione e chiuso
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o FROM com.example.outbox.domain.model.Order o LEFT JOIN FETCH o.items ORDER BY o.id ASC")
+    Stream<Order> streamAllWithItems();
+}
@@ -0,0 +1,146 @@
+package com.example.outbox.loadtest;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.MessagePublisher;
+import com.example.outbox.messagging.OrderEventConsumer;
+import com.example.outbox.messagging.OutboundMessage;
+import com.example.outbox.messagging.OutboxHeaders;
+import com.example.outbox.messagging.PayloadEncoding;
+import com.example.outbox.messagging.TopicRouter;
+import jakarta.annotation.PreDestroy;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broker in memoria per le prove di carico (profilo loadtest), al posto di Kafka.
+ *
+ * Ogni messaggio viene confermato subito e consegnato a {@link OrderEventConsumer#handle}
+ * come record nel formato HEADERS: decodifica, deduplica e gestore sono quelli reali.
+ * Come per le partizioni Kafka, i messaggi con la stessa chiave ({@link TopicRouter}) vanno
+ * sempre allo stesso thread e vengono elaborati in ordine.
+ *
+ * Per ogni messaggio elaborato registra la latenza end-to-end, dalla creazione della
+ * riga nell'outbox alla fine dell'elaborazione nel consumer.
+ */
+@Service
+@Primary
+@Profile("loadtest")
+public class InMemoryMessagePublisher implements MessagePublisher {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryMessagePublisher.class);
+
+    private final OrderEventConsumer consumer;
+    private final TopicRouter topicRouter;
+    private final ExecutorService[] partitions;
+    // Latenze in microsecondi; il Recorder permette di leggere intervalli senza fermare chi registra
+    private final Recorder endToEnd = new Recorder(3);
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong offset = new AtomicLong();
+
+    @Autowired
+    public InMemoryMessagePublisher(OrderEventConsumer consumer, TopicRouter topicRouter, OutboxProperties properties) {
+        this.consumer = consumer;
+        this.topicRouter = topicRouter;
+        this.partitions = new ExecutorService[properties.getLoadTest().getConsumerThreads()];
+        for (int i = 0; i < partitions.length; i++) {
+            String name = "loadtest-consumer-" + i;
+            partitions[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(OutboundMessage message) {
+        TopicRouter.Route route = topicRouter.route(message);
+        String key = route.keyOf(message);
+        int partition = Math.floorMod((key != null ? key : message.messageId()).hashCode(), partitions.length);
+        ConsumerRecord<String, byte[]> record = toRecord(route.topic(), key, message, partition);
+        pending.incrementAndGet();
+        partitions[partition].execute(() -> deliver(record, message.createdAt()));
+        // Come un broker: l'ack arriva alla ricezione, non dopo l'elaborazione
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void deliver(ConsumerRecord<String, byte[]> record, long createdAt) {
+        try {
+            consumer.handle(record);
+            endToEnd.recordValue(Math.max(0, System.currentTimeMillis() - createdAt) * 1000);
+            consumed.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("Load test consumer failed on message with key {}", record.key(), e);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    private ConsumerRecord<String, byte[]> toRecord(String topic, String key, OutboundMessage message, int partition) {
+        boolean claimCheck = message.payloadRef() != null;
+        byte[] value = claimCheck ? new byte[0] : message.payload().getBytes(StandardCharsets.UTF_8);
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(topic, partition, offset.getAndIncrement(), key, value);
+        Headers headers = record.headers();
+        addHeader(headers, OutboxHeaders.MESSAGE_ID, message.messageId());
+        addHeader(headers, OutboxHeaders.EVENT_TYPE, message.eventType());
+        addHeader(headers, OutboxHeaders.AGGREGATE_TYPE, message.aggregateType());
+        addHeader(headers, OutboxHeaders.AGGREGATE_ID, message.aggregateId());
+        addHeader(headers, OutboxHeaders.CREATED_AT, String.valueOf(message.createdAt()));
+        if (claimCheck) {
+            addHeader(headers, OutboxHeaders.PAYLOAD_REF, message.payloadRef());
+        } else {
+            addHeader(headers, OutboxHeaders.CONTENT_TYPE, PayloadEncoding.JSON.getContentType());
+        }
+        return record;
+    }
+
+    private static void addHeader(Headers headers, String name, String value) {
+        headers.add(name, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return Le latenze end-to-end (µs) registrate dall'ultima chiamata
+     */
+    public Histogram intervalEndToEnd() {
+        return endToEnd.getIntervalHistogram();
+    }
+
+    public long consumed() {
+        return consumed.get();
+    }
+
+    public long pending() {
+        return pending.get();
+    }
+
+    public long failed() {
+        return failed.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService partition : partitions) {
+            partition.shutdown();
+        }
+        for (ExecutorService partition : partitions) {
+            partition.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
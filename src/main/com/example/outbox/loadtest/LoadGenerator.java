@@ -0,0 +1,205 @@
+package com.example.outbox.loadtest;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.domain.model.Order;
+import com.example.outbox.domain.model.OrderItem;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import com.example.outbox.service.OrderGroupCommitter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prova di carico del profilo loadtest: crea ordini a ritmo costante e misura l'intera pipeline
+ * (scrittura, outbox, relay, consumer) con {@link InMemoryMessagePublisher} al posto di Kafka.
+ *
+ * Gli ordini passano da {@link OrderGroupCommitter}, come quelli del controller. Il carico è
+ * a ciclo aperto: ogni richiesta ha un istante di partenza previsto e la latenza di creazione
+ * si misura da lì, così un sistema che rallenta non nasconde le attese (coordinated omission).
+ *
+ * A ogni intervallo e alla fine riporta throughput di creazione e di consumo, arretrato
+ * dell'outbox e percentili p50/p99/p999 della latenza di creazione e di quella end-to-end.
+ */
+@Component
+@Profile("loadtest")
+public class LoadGenerator implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+    // Attesa massima, a fine prova, perché relay e consumer smaltiscano l'arretrato
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+
+    private final OrderGroupCommitter groupCommitter;
+    private final OutboxRepository outboxRepository;
+    private final InMemoryMessagePublisher broker;
+    private final ConfigurableApplicationContext context;
+    private final OutboxProperties.LoadTest settings;
+
+    private final Recorder createLatency = new Recorder(3);
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong createFailures = new AtomicLong();
+    private final Histogram totalCreate = new Histogram(3);
+    private final Histogram totalEndToEnd = new Histogram(3);
+
+    @Autowired
+    public LoadGenerator(OrderGroupCommitter groupCommitter, OutboxRepository outboxRepository,
+                         InMemoryMessagePublisher broker, ConfigurableApplicationContext context,
+                         OutboxProperties properties) {
+        this.groupCommitter = groupCommitter;
+        this.outboxRepository = outboxRepository;
+        this.broker = broker;
+        this.context = context;
+        this.settings = properties.getLoadTest();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // L'avvio dell'applicazione non resta bloccato per tutta la prova
+        Thread driver = new Thread(this::runLoadTest, "loadtest-driver");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    private void runLoadTest() {
+        int concurrency = settings.getConcurrency();
+        long intervalNanos = concurrency * 1_000_000_000L / settings.getRate();
+        long start = System.nanoTime();
+        long end = start + settings.getDuration().toNanos();
+        log.info("Load test started: {} orders/s on {} threads for {}", settings.getRate(), concurrency, settings.getDuration());
+
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            // Partenze sfalsate tra i thread, così il carico è uniforme nel tempo
+            long firstStart = start + i * intervalNanos / concurrency;
+            Thread worker = new Thread(() -> {
+                try {
+                    generate(firstStart, intervalNanos, end);
+                } finally {
+                    done.countDown();
+                }
+            }, "loadtest-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long reportNanos = settings.getReportInterval().toNanos();
+        long lastReport = start;
+        long lastCreated = 0;
+        long lastConsumed = 0;
+        try {
+            while (!done.await(reportNanos, TimeUnit.NANOSECONDS)) {
+                long now = System.nanoTime();
+                report(now - lastReport, created.get() - lastCreated, broker.consumed() - lastConsumed);
+                lastReport = now;
+                lastCreated = created.get();
+                lastConsumed = broker.consumed();
+            }
+            drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // Report finale sull'intera prova, arretrato smaltito compreso
+        long elapsed = System.nanoTime() - start;
+        report(System.nanoTime() - lastReport, created.get() - lastCreated, broker.consumed() - lastConsumed);
+        logSummary(elapsed);
+
+        if (settings.isExitOnFinish()) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private void generate(long firstStart, long intervalNanos, long end) {
+        long intendedStart = firstStart;
+        while (intendedStart < end) {
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            try {
+                groupCommitter.submit(newOrder()).join();
+                created.incrementAndGet();
+            } catch (Exception e) {
+                createFailures.incrementAndGet();
+                log.warn("Load test order creation failed", e);
+            }
+            createLatency.recordValue((System.nanoTime() - intendedStart) / 1000);
+            intendedStart += intervalNanos;
+        }
+    }
+
+    private void drain() throws InterruptedException {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (outboxRepository.countByProcessedFalse() == 0 && broker.pending() == 0) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        log.warn("Load test backlog not drained after {}", DRAIN_TIMEOUT);
+    }
+
+    private void report(long elapsedNanos, long createdCount, long consumedCount) {
+        Histogram create = createLatency.getIntervalHistogram();
+        Histogram endToEnd = broker.intervalEndToEnd();
+        totalCreate.add(create);
+        totalEndToEnd.add(endToEnd);
+
+        double seconds = elapsedNanos / 1e9;
+        log.info("Load test: created {}/s, consumed {}/s, outbox backlog {}, consumer queue {} | " +
+                        "create p50/p99/p999 {}/{}/{} ms | end-to-end p50/p99/p999 {}/{}/{} ms",
+                Math.round(createdCount / seconds), Math.round(consumedCount / seconds),
+                outboxRepository.countByProcessedFalse(), broker.pending(),
+                millis(create, 50), millis(create, 99), millis(create, 99.9),
+                millis(endToEnd, 50), millis(endToEnd, 99), millis(endToEnd, 99.9));
+    }
+
+    private void logSummary(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        log.info("Load test finished in {} s: {} orders created ({} failed), {} events consumed ({} failed), {} orders/s",
+                Math.round(seconds), created.get(), createFailures.get(), broker.consumed(), broker.failed(),
+                Math.round(created.get() / seconds));
+        log.info("Load test create latency ms: p50 {} p99 {} p999 {} max {}",
+                millis(totalCreate, 50), millis(totalCreate, 99), millis(totalCreate, 99.9),
+                totalCreate.getMaxValue() / 1000.0);
+        log.info("Load test end-to-end latency ms: p50 {} p99 {} p999 {} max {}",
+                millis(totalEndToEnd, 50), millis(totalEndToEnd, 99), millis(totalEndToEnd, 99.9),
+                totalEndToEnd.getMaxValue() / 1000.0);
+    }
+
+    private Order newOrder() {
+        Order order = new Order();
+        order.setCustomerName("Load test customer");
+        order.setStatus("CREATED");
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < settings.getItemsPerOrder(); i++) {
+            OrderItem item = new OrderItem();
+            item.setProductName("Product " + i);
+            item.setQuantity(1);
+            item.setPrice(BigDecimal.TEN);
+            item.setOrder(order);
+            order.getItems().add(item);
+            total = total.add(item.getPrice());
+        }
+        order.setTotalAmount(total);
+        return order;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
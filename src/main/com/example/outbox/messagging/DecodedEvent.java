@@ -0,0 +1,82 @@
+package com.example.outbox.messagging;
+
+import java.io.IOException;
+
+// Evento letto da un record Kafka, già convertito nella classe del suo gestore.
+// Con il claim-check il payload viene letto dal blob store solo alla prima richiesta,
+// così i duplicati e gli eventi senza gestore non lo scaricano mai.
+// createdAt (epoch millis dell'inserimento nell'outbox, -1 se assente) serve alla latenza end-to-end.
+public final class DecodedEvent {
+    private final String messageId;
+    private final String eventType;
+    private final String aggregateType;
+    private final String aggregateId;
+    private final String timestamp;
+    private final long createdAt;
+    private final EventHandlerRegistry.EventHandler<?> handler;
+    private PayloadLoader loader;
+    private Object event;
+
+    DecodedEvent(String messageId, String eventType, String aggregateType, String aggregateId, String timestamp,
+                 long createdAt, EventHandlerRegistry.EventHandler<?> handler, Object event) {
+        this.messageId = messageId;
+        this.eventType = eventType;
+        this.aggregateType = aggregateType;
+        this.aggregateId = aggregateId;
+        this.timestamp = timestamp;
+        this.createdAt = createdAt;
+        this.handler = handler;
+        this.event = event;
+    }
+
+    DecodedEvent(String messageId, String eventType, String aggregateType, String aggregateId, String timestamp,
+                 long createdAt, EventHandlerRegistry.EventHandler<?> handler, PayloadLoader loader) {
+        this(messageId, eventType, aggregateType, aggregateId, timestamp, createdAt, handler, (Object) null);
+        this.loader = loader;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getAggregateType() {
+        return aggregateType;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Object getEvent() throws IOException {
+        if (loader != null) {
+            event = loader.load();
+            loader = null;
+        }
+        return event;
+    }
+
+    public boolean isKnown() {
+        return handler != null;
+    }
+
+    public void dispatch() throws IOException {
+        handler.handle(getEvent());
+    }
+
+    @FunctionalInterface
+    interface PayloadLoader {
+        Object load() throws IOException;
+    }
+}
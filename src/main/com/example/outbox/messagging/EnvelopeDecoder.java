@@ -0,0 +1,179 @@
+package com.example.outbox.messagging;
+
+import com.example.outbox.claimcheck.ClaimCheck;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodifica i record Kafka in streaming, senza albero JSON né stringhe intermedie.
+ *
+ * - Formato ENVELOPE: legge l'envelope con un JsonParser; quando arriva al campo
+ *   payload il tipo di evento è già noto e il payload viene convertito direttamente
+ *   dal flusso di token nella classe del gestore.
+ * - Formato HEADERS: il tipo di evento arriva dagli header e il valore del record
+ *   viene convertito direttamente dai suoi byte.
+ * - Claim-check: al posto del payload c'è un riferimento (campo payloadRef o header),
+ *   risolto dal blob store solo quando l'evento viene effettivamente elaborato.
+ */
+@Component
+public class EnvelopeDecoder {
+    private final JsonFactory jsonFactory;
+    private final PayloadCodec payloadCodec;
+    private final LocalSchemaRegistry schemaRegistry;
+    private final ClaimCheck claimCheck;
+
+    @Autowired
+    public EnvelopeDecoder(EventSerializer eventSerializer, PayloadCodec payloadCodec, LocalSchemaRegistry schemaRegistry,
+                           ClaimCheck claimCheck) {
+        this.jsonFactory = eventSerializer.getObjectMapper().getFactory();
+        this.payloadCodec = payloadCodec;
+        this.schemaRegistry = schemaRegistry;
+        this.claimCheck = claimCheck;
+    }
+
+    /**
+     * @return L'evento decodificato; se per il suo tipo non c'è un gestore, {@link DecodedEvent#isKnown()} è false
+     */
+    public DecodedEvent decode(ConsumerRecord<String, byte[]> record, EventHandlerRegistry handlers) throws IOException {
+        Header eventTypeHeader = record.headers().lastHeader(OutboxHeaders.EVENT_TYPE);
+        return eventTypeHeader != null
+                ? decodeHeaders(record, eventTypeHeader, handlers)
+                : decodeEnvelope(record.value(), handlers);
+    }
+
+    private DecodedEvent decodeHeaders(ConsumerRecord<String, byte[]> record, Header eventTypeHeader,
+                                       EventHandlerRegistry handlers) throws IOException {
+        String eventType = resolveEventType(record, eventTypeHeader);
+        EventHandlerRegistry.EventHandler<?> handler = handlers.get(eventType);
+        if (handler == null) {
+            return unknown(header(record, OutboxHeaders.MESSAGE_ID), eventType);
+        }
+
+        String payloadRef = header(record, OutboxHeaders.PAYLOAD_REF);
+        if (payloadRef != null) {
+            return new DecodedEvent(header(record, OutboxHeaders.MESSAGE_ID), eventType,
+                    header(record, OutboxHeaders.AGGREGATE_TYPE), header(record, OutboxHeaders.AGGREGATE_ID),
+                    header(record, OutboxHeaders.TIMESTAMP), createdAt(record), handler,
+                    () -> readClaimCheck(payloadRef, handler));
+        }
+
+        PayloadEncoding encoding = PayloadEncoding.fromContentType(header(record, OutboxHeaders.CONTENT_TYPE));
+        try (JsonParser parser = payloadCodec.parser(record.value(), encoding)) {
+            Object event = handler.getReader().readValue(parser);
+            return new DecodedEvent(header(record, OutboxHeaders.MESSAGE_ID), eventType,
+                    header(record, OutboxHeaders.AGGREGATE_TYPE), header(record, OutboxHeaders.AGGREGATE_ID),
+                    header(record, OutboxHeaders.TIMESTAMP), createdAt(record), handler, event);
+        }
+    }
+
+    private DecodedEvent decodeEnvelope(byte[] value, EventHandlerRegistry handlers) throws IOException {
+        String messageId = null;
+        String eventType = null;
+        String aggregateType = null;
+        String aggregateId = null;
+        String timestamp = null;
+        long createdAt = -1;
+        String payloadRef = null;
+        Object event = null;
+        TokenBuffer bufferedPayload = null;
+
+        try (JsonParser parser = jsonFactory.createParser(value)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Message envelope is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "messageId" -> messageId = parser.getValueAsString();
+                    case "eventType" -> eventType = parser.getValueAsString();
+                    case "aggregateType" -> aggregateType = parser.getValueAsString();
+                    case "aggregateId" -> aggregateId = parser.getValueAsString();
+                    case "timestamp" -> timestamp = parser.getValueAsString();
+                    case "createdAt" -> createdAt = parser.getValueAsLong(-1);
+                    case "payloadRef" -> payloadRef = parser.getValueAsString();
+                    case "payload" -> {
+                        EventHandlerRegistry.EventHandler<?> handler = eventType != null ? handlers.get(eventType) : null;
+                        if (handler != null) {
+                            // Caso normale: eventType precede payload, conversione diretta dal flusso di token
+                            event = handler.getReader().readValue(parser);
+                        } else if (eventType == null) {
+                            // Ordine dei campi inatteso: il payload viene bufferizzato come token, non come stringa
+                            bufferedPayload = new TokenBuffer(parser);
+                            bufferedPayload.copyCurrentStructure(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        EventHandlerRegistry.EventHandler<?> handler = eventType != null ? handlers.get(eventType) : null;
+        if (handler == null) {
+            return unknown(messageId, eventType);
+        }
+        if (payloadRef != null) {
+            String reference = payloadRef;
+            return new DecodedEvent(messageId, eventType, aggregateType, aggregateId, timestamp, createdAt, handler,
+                    () -> readClaimCheck(reference, handler));
+        }
+        if (event == null && bufferedPayload != null) {
+            try (JsonParser parser = bufferedPayload.asParser()) {
+                event = handler.getReader().readValue(parser);
+            }
+        }
+        return new DecodedEvent(messageId, eventType, aggregateType, aggregateId, timestamp, createdAt, handler, event);
+    }
+
+    private DecodedEvent unknown(String messageId, String eventType) {
+        return new DecodedEvent(messageId, eventType, null, null, null, -1, null, (Object) null);
+    }
+
+    // Il blob contiene il JSON originale dell'evento
+    private Object readClaimCheck(String payloadRef, EventHandlerRegistry.EventHandler<?> handler) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(claimCheck.resolve(payloadRef))) {
+            return handler.getReader().readValue(parser);
+        }
+    }
+
+    // Con lo schemaId il tipo di evento si risolve dal registro locale
+    private String resolveEventType(ConsumerRecord<String, byte[]> record, Header eventTypeHeader) {
+        String schemaId = header(record, OutboxHeaders.SCHEMA_ID);
+        if (schemaId != null) {
+            LocalSchemaRegistry.Schema schema = schemaRegistry.forId(Integer.parseInt(schemaId));
+            if (schema != null) {
+                return schema.eventType();
+            }
+        }
+        return new String(eventTypeHeader.value(), StandardCharsets.UTF_8);
+    }
+
+    // Messaggi pubblicati prima dell'introduzione dell'header: latenza end-to-end non disponibile
+    private static long createdAt(ConsumerRecord<String, byte[]> record) {
+        String value = header(record, OutboxHeaders.CREATED_AT);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String header(ConsumerRecord<String, byte[]> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
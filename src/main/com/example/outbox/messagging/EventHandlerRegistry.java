@@ -0,0 +1,57 @@
+package com.example.outbox.messagging;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Registro dei gestori di evento, al posto dello switch sul tipo di evento.
+ *
+ * Per ogni tipo registra la classe di destinazione, l'ObjectReader già pronto
+ * per quella classe e il gestore da invocare: a runtime la risoluzione è una
+ * sola lookup in mappa.
+ */
+public class EventHandlerRegistry {
+
+    private final EventSerializer eventSerializer;
+    private final Map<String, EventHandler<?>> handlers = new HashMap<>();
+
+    public EventHandlerRegistry(EventSerializer eventSerializer) {
+        this.eventSerializer = eventSerializer;
+    }
+
+    public <T> EventHandlerRegistry register(String eventType, Class<T> type, Consumer<T> handler) {
+        handlers.put(eventType, new EventHandler<>(type, eventSerializer.readerFor(type), handler));
+        return this;
+    }
+
+    public EventHandler<?> get(String eventType) {
+        return handlers.get(eventType);
+    }
+
+    public static final class EventHandler<T> {
+        private final Class<T> type;
+        private final ObjectReader reader;
+        private final Consumer<T> handler;
+
+        private EventHandler(Class<T> type, ObjectReader reader, Consumer<T> handler) {
+            this.type = type;
+            this.reader = reader;
+            this.handler = handler;
+        }
+
+        public Class<T> getType() {
+            return type;
+        }
+
+        public ObjectReader getReader() {
+            return reader;
+        }
+
+        void handle(Object event) {
+            handler.accept(type.cast(event));
+        }
+    }
+}
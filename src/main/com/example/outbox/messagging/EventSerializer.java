@@ -1,26 +1,50 @@
 package com.example.outbox.messagging;
 
+import com.example.outbox.util.JsonUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-// Classe per serializzare/deserializzare eventi
+import java.io.IOException;
+
+// Classe per serializzare/deserializzare eventi.
+// Usa l'unico ObjectMapper dell'applicazione e tiene in cache un ObjectWriter e un
+// ObjectReader per classe: la configurazione e l'introspezione dei tipi avvengono una
+// volta sola, non a ogni messaggio.
 @Component
 public class EventSerializer {
     private final ObjectMapper objectMapper;
+    private final ClassValue<ObjectWriter> writers;
+    private final ClassValue<ObjectReader> readers;
 
     public EventSerializer() {
-        this.objectMapper = new ObjectMapper();
-        // Configurazione di Jackson per la serializzazione di date
-        this.objectMapper.registerModule(new JavaTimeModule());
-        this.objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        this(JsonUtils.getObjectMapper());
+    }
+
+    @Autowired
+    public EventSerializer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.writers = new ClassValue<>() {
+            @Override
+            protected ObjectWriter computeValue(Class<?> type) {
+                return objectMapper.writerFor(type);
+            }
+        };
+        this.readers = new ClassValue<>() {
+            @Override
+            protected ObjectReader computeValue(Class<?> type) {
+                return objectMapper.readerFor(type);
+            }
+        };
     }
 
     public String serialize(Object event) {
         try {
-            return objectMapper.writeValueAsString(event);
+            return writerFor(event.getClass()).writeValueAsString(event);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error serializing event", e);
         }
@@ -28,9 +52,37 @@ public class EventSerializer {
 
     public <T> T deserialize(String json, Class<T> type) {
         try {
-            return objectMapper.readValue(json, type);
+            return readerFor(type).readValue(json);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error deserializing event", e);
         }
     }
-}
\ No newline at end of file
+
+    public JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error parsing message", e);
+        }
+    }
+
+    public JsonNode readTree(byte[] json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing message", e);
+        }
+    }
+
+    public ObjectWriter writerFor(Class<?> type) {
+        return writers.get(type);
+    }
+
+    public ObjectReader readerFor(Class<?> type) {
+        return readers.get(type);
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+}
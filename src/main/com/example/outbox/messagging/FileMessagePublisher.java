@@ -0,0 +1,129 @@
+package com.example.outbox.messagging;
+
+import com.example.outbox.config.OutboxProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publisher su file locale append-only, per i test e per i nodi periferici senza Kafka.
+ *
+ * Ogni messaggio è una riga JSON con metadati e payload. Un lotto viene preparato in memoria
+ * e scritto con una sola write e, se outbox.messaging.file-sync è attivo, con un solo fsync:
+ * i messaggi risultano confermati solo quando sono su disco. Se la scrittura fallisce il file
+ * viene troncato alla lunghezza precedente, senza righe parziali. Un processo esterno può
+ * inoltrare il file al broker quando torna raggiungibile, deduplicando per messageId.
+ */
+@Service
+@ConditionalOnProperty(name = "outbox.messaging.transport", havingValue = "FILE")
+public class FileMessagePublisher implements MessagePublisher {
+    private static final Logger log = LoggerFactory.getLogger(FileMessagePublisher.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectWriter lineWriter;
+    private final boolean sync;
+    private final Path file;
+    private final FileOutputStream output;
+    // Righe del lotto in preparazione, riusato da un lotto all'altro
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+
+    @Autowired
+    public FileMessagePublisher(EventSerializer eventSerializer, OutboxProperties properties) throws IOException {
+        // Il writer non deve chiudere né svuotare lo stream del file dopo ogni riga
+        this.lineWriter = eventSerializer.writerFor(MessageLine.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        this.sync = properties.getMessaging().isFileSync();
+        this.file = Path.of(properties.getMessaging().getFile());
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.output = new FileOutputStream(file.toFile(), true);
+        log.info("Publishing outbox messages to file {}", file.toAbsolutePath());
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(OutboundMessage message) {
+        return publishBatch(List.of(message)).get(0);
+    }
+
+    @Override
+    public List<CompletableFuture<Void>> publishBatch(List<OutboundMessage> messages) {
+        List<CompletableFuture<Void>> results = new ArrayList<>(messages.size());
+        // Le corsie scrivono in parallelo: ogni lotto occupa righe contigue del file
+        synchronized (buffer) {
+            CompletableFuture<Void> outcome;
+            try {
+                buffer.reset();
+                for (OutboundMessage message : messages) {
+                    lineWriter.writeValue(buffer, toLine(message));
+                    buffer.write('\n');
+                }
+                append();
+                outcome = CompletableFuture.completedFuture(null);
+            } catch (IOException e) {
+                log.error("Failed to append {} messages to {}", messages.size(), file, e);
+                outcome = CompletableFuture.failedFuture(new UncheckedIOException("Error writing messages to " + file, e));
+            }
+            for (int i = 0; i < messages.size(); i++) {
+                results.add(outcome);
+            }
+        }
+        return results;
+    }
+
+    // Accoda il lotto al file; in caso di errore riporta il file alla lunghezza precedente
+    private void append() throws IOException {
+        long size = output.getChannel().size();
+        try {
+            buffer.writeTo(output);
+            if (sync) {
+                output.getFD().sync();
+            }
+        } catch (IOException e) {
+            try {
+                output.getChannel().truncate(size);
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+                log.error("Could not truncate {} after a failed write, the last line may be partial", file);
+            }
+            throw e;
+        }
+    }
+
+    private static MessageLine toLine(OutboundMessage message) {
+        return new MessageLine(message.messageId(), message.eventType(), message.aggregateType(),
+                message.aggregateId(), message.createdAt(), message.payload(), message.payloadRef());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (buffer) {
+            output.close();
+        }
+    }
+
+    // Una riga del file: stessi campi dell'envelope Kafka, payload incluso così com'è
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record MessageLine(String messageId, String eventType, String aggregateType, String aggregateId,
+                       long createdAt, @JsonRawValue String payload, String payloadRef) {
+    }
+}
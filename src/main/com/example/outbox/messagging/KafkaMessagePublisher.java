@@ -1,70 +1,161 @@
 package com.example.outbox.messagging;
 
+import com.example.outbox.config.OutboxProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
-import org.springframework.util.concurrent.ListenableFuture;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 // Implementazione specifica per Kafka
 @Service
+@ConditionalOnProperty(name = "outbox.messaging.transport", havingValue = "KAFKA", matchIfMissing = true)
 public class KafkaMessagePublisher implements MessagePublisher {
     private static final Logger log = LoggerFactory.getLogger(KafkaMessagePublisher.class);
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final TopicRouter topicRouter;
+    private final ObjectWriter envelopeWriter;
+    private final PayloadCodec payloadCodec;
+    private final LocalSchemaRegistry schemaRegistry;
+    private final WireFormat wireFormat;
+    private final PayloadEncoding payloadEncoding;
+    private final MeterRegistry meterRegistry;
+    // Timer per tipo di aggregato, tipo di evento ed esito, creati alla prima occorrenza
+    private final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
 
     @Autowired
-    public KafkaMessagePublisher(KafkaTemplate<String, String> kafkaTemplate) {
+    public KafkaMessagePublisher(KafkaTemplate<String, byte[]> kafkaTemplate, TopicRouter topicRouter,
+                                 EventSerializer eventSerializer, PayloadCodec payloadCodec,
+                                 LocalSchemaRegistry schemaRegistry, OutboxProperties properties,
+                                 MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
+        this.topicRouter = topicRouter;
+        this.envelopeWriter = eventSerializer.writerFor(MessageEnvelope.class);
+        this.payloadCodec = payloadCodec;
+        this.schemaRegistry = schemaRegistry;
+        this.wireFormat = properties.getMessaging().getWireFormat();
+        this.payloadEncoding = properties.getMessaging().getPayloadEncoding();
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
-    public void publish(String eventType, String aggregateType, String aggregateId, String payload) {
-        String topic = determineTopic(aggregateType);
+    public CompletableFuture<Void> publish(OutboundMessage message) {
+        TopicRouter.Route route = topicRouter.route(message);
+        String topic = route.topic();
+        String key = route.keyOf(message);
+        String timestamp = LocalDateTime.now().toString();
+
+        ProducerRecord<String, byte[]> record = wireFormat == WireFormat.HEADERS
+                ? headersRecord(route, key, message, timestamp)
+                : envelopeRecord(route, key, message, timestamp);
+
+        // Pubblica il messaggio su Kafka; send() può bloccare se il buffer del producer è pieno
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<String, byte[]>> future = kafkaTemplate.send(record);
+        timer("outbox.publish.send", message, null).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        // Il chiamante riceve l'esito reale dell'invio: l'evento va marcato
+        // come processato solo dopo l'ack del broker
+        return future.whenComplete((result, ex) -> {
+            timer("outbox.publish.ack", message, ex == null ? "success" : "failure")
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (ex != null) {
+                log.error("Failed to send message to topic {}", topic, ex);
+            } else {
+                log.debug("Message sent successfully to topic {} with key {}", topic, key);
+            }
+        }).thenApply(result -> null);
+    }
 
+    private ProducerRecord<String, byte[]> envelopeRecord(TopicRouter.Route route, String key, OutboundMessage message,
+                                                          String timestamp) {
         // Crea un oggetto MessageEnvelope per aggiungere metadati
         MessageEnvelope envelope = new MessageEnvelope(
-                UUID.randomUUID().toString(),
-                eventType,
-                aggregateType,
-                aggregateId,
-                LocalDateTime.now().toString(),
-                payload
+                message.messageId(),
+                message.eventType(),
+                message.aggregateType(),
+                message.aggregateId(),
+                timestamp,
+                message.createdAt(),
+                message.payload(),
+                message.payloadRef()
         );
 
+        ProducerRecord<String, byte[]> record;
         try {
-            String messageJson = new ObjectMapper().writeValueAsString(envelope);
-
-            // Pubblica il messaggio su Kafka
-            CompletableFuture<SendResult<String, String>> future =
-                    kafkaTemplate.send(topic, aggregateId, messageJson);
-
-            future.whenComplete((result, ex) -> {
-                if (ex != null) {
-                    log.error("Failed to send message to topic {}", topic, ex);
-                } else {
-                    log.debug("Message sent successfully to topic {} with key {}", topic, aggregateId);
-                }
-            });
-
+            record = new ProducerRecord<>(route.topic(), route.partition(), key, envelopeWriter.writeValueAsBytes(envelope));
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error serializing message envelope", e);
         }
+        // Anche con l'envelope il messageId va in un header: i consumer a lotti deduplicano
+        // l'intero poll con una query senza decodificare i messaggi
+        addHeader(record.headers(), OutboxHeaders.MESSAGE_ID, message.messageId());
+        return record;
+    }
+
+    private ProducerRecord<String, byte[]> headersRecord(TopicRouter.Route route, String key, OutboundMessage message,
+                                                         String timestamp) {
+        // I metadati viaggiano negli header: il payload non viene né incapsulato né riserializzato.
+        // Con il claim-check il valore è vuoto e il riferimento è in un header
+        boolean claimCheck = message.payloadRef() != null;
+        byte[] value = claimCheck ? new byte[0] : payloadCodec.encode(message.payload(), payloadEncoding);
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(route.topic(), route.partition(), key, value);
+        Headers headers = record.headers();
+        addHeader(headers, OutboxHeaders.MESSAGE_ID, message.messageId());
+        addHeader(headers, OutboxHeaders.EVENT_TYPE, message.eventType());
+        addHeader(headers, OutboxHeaders.AGGREGATE_TYPE, message.aggregateType());
+        addHeader(headers, OutboxHeaders.AGGREGATE_ID, message.aggregateId());
+        addHeader(headers, OutboxHeaders.TIMESTAMP, timestamp);
+        addHeader(headers, OutboxHeaders.CREATED_AT, String.valueOf(message.createdAt()));
+        if (claimCheck) {
+            // Il blob contiene il JSON originale
+            addHeader(headers, OutboxHeaders.PAYLOAD_REF, message.payloadRef());
+            addHeader(headers, OutboxHeaders.CONTENT_TYPE, PayloadEncoding.JSON.getContentType());
+        } else {
+            addHeader(headers, OutboxHeaders.CONTENT_TYPE, payloadEncoding.getContentType());
+        }
+
+        LocalSchemaRegistry.Schema schema = schemaRegistry.forEventType(message.eventType());
+        if (schema != null) {
+            addHeader(headers, OutboxHeaders.SCHEMA_ID, String.valueOf(schema.id()));
+        }
+        return record;
+    }
+
+    private Timer timer(String name, OutboundMessage message, String outcome) {
+        return timers.computeIfAbsent(List.of(name, message.aggregateType(), message.eventType(), String.valueOf(outcome)), key -> {
+            Timer.Builder builder = Timer.builder(name)
+                    .tag("aggregate.type", message.aggregateType())
+                    .tag("event.type", message.eventType())
+                    .publishPercentileHistogram();
+            if (outcome != null) {
+                builder.tag("outcome", outcome);
+            }
+            return builder.register(meterRegistry);
+        });
     }
 
-    private String determineTopic(String aggregateType) {
-        // Logica per determinare il topic in base al tipo di aggregato
-        // Ad esempio, "orders" per "com.example.outbox.domain.model.Order", "payments" per "Payment", ecc.
-        return aggregateType.toLowerCase() + "s";
+    private static void addHeader(Headers headers, String name, String value) {
+        headers.add(name, value.getBytes(StandardCharsets.UTF_8));
     }
 
     // Classe interna per rappresentare il messaggio inviato
@@ -74,16 +165,25 @@ public class KafkaMessagePublisher implements MessagePublisher {
         private final String aggregateType;
         private final String aggregateId;
         private final String timestamp;
+        private final long createdAt;
+        // Il payload è già JSON: viene incluso così com'è invece di essere escapato come stringa
+        @JsonRawValue
+        @JsonInclude(JsonInclude.Include.NON_NULL)
         private final String payload;
+        // Con il claim-check al posto del payload c'è il riferimento al blob store
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private final String payloadRef;
 
         public MessageEnvelope(String messageId, String eventType, String aggregateType,
-                               String aggregateId, String timestamp, String payload) {
+                               String aggregateId, String timestamp, long createdAt, String payload, String payloadRef) {
             this.messageId = messageId;
             this.eventType = eventType;
             this.aggregateType = aggregateType;
             this.aggregateId = aggregateId;
             this.timestamp = timestamp;
+            this.createdAt = createdAt;
             this.payload = payload;
+            this.payloadRef = payloadRef;
         }
 
         // Getters e setters necessari per la serializzazione
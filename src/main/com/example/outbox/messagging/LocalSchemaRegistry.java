@@ -0,0 +1,43 @@
+package com.example.outbox.messagging;
+
+import com.example.outbox.domain.event.OrderCreatedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registro locale dei tipi di evento, al posto di uno schema registry esterno.
+ *
+ * Associa a ogni tipo di evento un identificativo numerico stabile, trasmesso
+ * nell'header schemaId insieme ai payload binari: il consumer risolve la classe
+ * di destinazione dall'ID senza dover ispezionare il contenuto del messaggio.
+ */
+@Component
+public class LocalSchemaRegistry {
+
+    private final Map<String, Schema> byEventType = new HashMap<>();
+    private final Map<Integer, Schema> byId = new HashMap<>();
+
+    public LocalSchemaRegistry() {
+        register(1, "OrderCreated", OrderCreatedEvent.class);
+        // Altri tipi di eventi...
+    }
+
+    private void register(int id, String eventType, Class<?> type) {
+        Schema schema = new Schema(id, eventType, type);
+        byEventType.put(eventType, schema);
+        byId.put(id, schema);
+    }
+
+    public Schema forEventType(String eventType) {
+        return byEventType.get(eventType);
+    }
+
+    public Schema forId(int id) {
+        return byId.get(id);
+    }
+
+    public record Schema(int id, String eventType, Class<?> type) {
+    }
+}
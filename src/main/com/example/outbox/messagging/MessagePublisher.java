@@ -1,6 +1,40 @@
 package com.example.outbox.messagging;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 // Interfaccia per il publisher dei messaggi
 public interface MessagePublisher {
-    void publish(String eventType, String aggregateType, String aggregateId, String payload);
-}
\ No newline at end of file
+
+    /**
+     * Avvia la pubblicazione di un evento senza attendere il broker.
+     * Il future si completa quando il broker conferma la ricezione (ack)
+     * e si completa eccezionalmente se il messaggio viene rifiutato.
+     *
+     * Il messageId deve restare lo stesso a ogni ripubblicazione dello stesso evento:
+     * è la chiave con cui i consumer riconoscono i duplicati.
+     */
+    CompletableFuture<Void> publish(OutboundMessage message);
+
+    /**
+     * Pubblica un lotto di messaggi, nell'ordine della lista.
+     * Restituisce un future per messaggio, nella stessa posizione: ogni evento ha il proprio
+     * esito e un rifiuto non fa fallire gli altri messaggi del lotto.
+     *
+     * L'implementazione di default pubblica un messaggio alla volta, senza attendere gli ack;
+     * quelle che possono sfruttare il lotto (una sola scrittura su disco) la sostituiscono.
+     * Non deve lanciare eccezioni: un errore va riportato nel future del singolo messaggio.
+     */
+    default List<CompletableFuture<Void>> publishBatch(List<OutboundMessage> messages) {
+        List<CompletableFuture<Void>> results = new ArrayList<>(messages.size());
+        for (OutboundMessage message : messages) {
+            try {
+                results.add(publish(message));
+            } catch (Exception e) {
+                results.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        return results;
+    }
+}
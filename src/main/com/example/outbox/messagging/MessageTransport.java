@@ -0,0 +1,9 @@
+package com.example.outbox.messagging;
+
+// Destinazione dei messaggi pubblicati dal relay
+public enum MessageTransport {
+    /** Topic Kafka (default). */
+    KAFKA,
+    /** File locale append-only, per test e nodi periferici senza Kafka. */
+    FILE
+}
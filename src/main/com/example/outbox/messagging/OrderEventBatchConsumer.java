@@ -0,0 +1,226 @@
+package com.example.outbox.messagging;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.dedup.MessageDeduplicator;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consumer a lotti degli eventi degli ordini.
+ *
+ * Riceve l'intero lotto restituito da un poll e distribuisce i record su N worker
+ * in base alla chiave (l'aggregateId): i record dello stesso ordine vengono elaborati
+ * in sequenza dallo stesso worker, ordini diversi in parallelo. Un errore ferma solo
+ * il worker in cui si verifica.
+ *
+ * Un record che fallisce viene riprovato sul posto alcune volte con attese crescenti,
+ * poi inoltrato al topic di dead letter così da non bloccare la partizione.
+ *
+ * Per ogni partizione l'offset viene confermato fino al primo record non elaborato;
+ * da quel record il consumer si riposiziona, così al poll successivo il resto della
+ * partizione viene riletto.
+ */
+@Service
+public class OrderEventBatchConsumer {
+    private static final Logger log = LoggerFactory.getLogger(OrderEventBatchConsumer.class);
+
+    private final OrderEventConsumer recordHandler;
+    private final MessageDeduplicator deduplicator;
+    private final DeadLetterPublishingRecoverer deadLetterRecoverer;
+    private final int retryAttempts;
+    private final long retryBackoffMillis;
+    private final ExecutorService[] workers;
+
+    @Autowired
+    public OrderEventBatchConsumer(OrderEventConsumer recordHandler, MessageDeduplicator deduplicator,
+                                   DeadLetterPublishingRecoverer deadLetterRecoverer, OutboxProperties properties) {
+        this.recordHandler = recordHandler;
+        this.deduplicator = deduplicator;
+        this.deadLetterRecoverer = deadLetterRecoverer;
+        this.retryAttempts = properties.getConsumer().getBatchRetryAttempts();
+        this.retryBackoffMillis = properties.getConsumer().getBatchRetryBackoff().toMillis();
+
+        int workerCount = properties.getConsumer().getWorkers();
+        this.workers = new ExecutorService[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            int index = i;
+            AtomicInteger threads = new AtomicInteger();
+            workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "order-consumer-" + index + "-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @KafkaListener(topics = "orders", groupId = "inventory-service",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${outbox.consumer.listeners-enabled:true}' == 'true' and '${outbox.consumer.batch-mode:false}' == 'true'}")
+    public void consumeBatch(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        prefetchProcessed(records);
+        try {
+            processBatch(records, consumer);
+        } finally {
+            // Le verifiche del prefetch valgono solo per questo poll
+            deduplicator.clearPrefetched();
+        }
+    }
+
+    private void processBatch(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        boolean[] processed = new boolean[records.size()];
+
+        // 1. Raggruppa i record per worker mantenendo l'ordine di arrivo
+        List<List<Integer>> byWorker = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            byWorker.add(new ArrayList<>());
+        }
+        for (int i = 0; i < records.size(); i++) {
+            byWorker.get(workerOf(records.get(i))).add(i);
+        }
+
+        // 2. Elabora in parallelo e attende la fine di tutti i worker
+        List<CompletableFuture<Void>> futures = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            List<Integer> positions = byWorker.get(i);
+            if (!positions.isEmpty()) {
+                futures.add(CompletableFuture.runAsync(() -> process(records, positions, processed), workers[i]));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        flushProcessed();
+
+        // 3. Per ogni partizione conferma fino al primo record non elaborato
+        Map<TopicPartition, Long> committable = new HashMap<>();
+        Map<TopicPartition, Long> firstFailed = new HashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            if (firstFailed.containsKey(partition)) {
+                continue;
+            }
+            if (processed[i]) {
+                committable.put(partition, record.offset() + 1);
+            } else {
+                firstFailed.put(partition, record.offset());
+            }
+        }
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        committable.forEach((partition, offset) -> offsets.put(partition, new OffsetAndMetadata(offset)));
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+
+        // 4. I record non elaborati verranno riletti al prossimo poll
+        firstFailed.forEach((partition, offset) -> {
+            log.warn("Rewinding partition {} to offset {} after processing failure", partition, offset);
+            consumer.seek(partition, offset);
+        });
+    }
+
+    // I messageId si leggono dagli header senza decodificare: una sola query per tutto il poll
+    private void prefetchProcessed(List<ConsumerRecord<String, byte[]>> records) {
+        List<String> messageIds = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Header header = record.headers().lastHeader(OutboxHeaders.MESSAGE_ID);
+            if (header != null) {
+                messageIds.add(new String(header.value(), StandardCharsets.UTF_8));
+            }
+        }
+        if (!messageIds.isEmpty()) {
+            deduplicator.prefetch(messageIds);
+        }
+    }
+
+    // I messaggi elaborati nel poll vengono registrati prima di confermare gli offset
+    private void flushProcessed() {
+        try {
+            deduplicator.flush();
+        } catch (Exception e) {
+            // Restano in cache e in coda: il prossimo flush li riproverà
+            log.error("Failed to persist processed message ids", e);
+        }
+    }
+
+    private void process(List<ConsumerRecord<String, byte[]>> records, List<Integer> positions, boolean[] processed) {
+        for (int position : positions) {
+            ConsumerRecord<String, byte[]> record = records.get(position);
+            if (!processWithRetry(record)) {
+                // Il record non è stato né elaborato né inoltrato: il worker si ferma,
+                // per non elaborare record dello stesso ordine fuori sequenza
+                return;
+            }
+            processed[position] = true;
+        }
+    }
+
+    // Tentativi sul posto con backoff esponenziale, poi dead letter; false se anche l'inoltro fallisce
+    private boolean processWithRetry(ConsumerRecord<String, byte[]> record) {
+        long backoff = retryBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                recordHandler.handle(record);
+                return true;
+            } catch (Exception e) {
+                log.warn("Error processing record {}-{}@{} (attempt {}/{})",
+                        record.topic(), record.partition(), record.offset(), attempt, retryAttempts, e);
+                if (attempt >= retryAttempts) {
+                    return sendToDeadLetter(record, e);
+                }
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff *= 2;
+        }
+    }
+
+    // Chiamato dai worker: il Consumer non è thread-safe e non viene passato al recoverer
+    private boolean sendToDeadLetter(ConsumerRecord<String, byte[]> record, Exception failure) {
+        try {
+            deadLetterRecoverer.accept(record, null, failure);
+            log.error("Record {}-{}@{} moved to dead letter topic", record.topic(), record.partition(), record.offset());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to forward record {}-{}@{} to dead letter topic",
+                    record.topic(), record.partition(), record.offset(), e);
+            return false;
+        }
+    }
+
+    // Senza chiave si ripiega sulla partizione, che ha già un ordine proprio
+    private int workerOf(ConsumerRecord<String, byte[]> record) {
+        int hash = record.key() != null ? record.key().hashCode() : record.partition();
+        return Math.floorMod(hash, workers.length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+}
@@ -1,49 +1,113 @@
 package com.example.outbox.messagging;
 
 import com.example.outbox.domain.event.OrderCreatedEvent;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.outbox.messagging.dedup.MessageDeduplicator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
-import java.util.logging.Logger;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class OrderEventConsumer {
     private static final Logger log = LoggerFactory.getLogger(OrderEventConsumer.class);
 
-    private final EventSerializer eventSerializer;
+    private final EnvelopeDecoder envelopeDecoder;
+    private final MessageDeduplicator deduplicator;
+    private final EventHandlerRegistry handlers;
+    private final MeterRegistry meterRegistry;
+    // Timer per tipo di aggregato e di evento, creati alla prima occorrenza
+    private final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
 
     @Autowired
-    public OrderEventConsumer(EventSerializer eventSerializer) {
-        this.eventSerializer = eventSerializer;
+    public OrderEventConsumer(EventSerializer eventSerializer, EnvelopeDecoder envelopeDecoder,
+                              MessageDeduplicator deduplicator, MeterRegistry meterRegistry) {
+        this.envelopeDecoder = envelopeDecoder;
+        this.deduplicator = deduplicator;
+        this.meterRegistry = meterRegistry;
+        // Gestori per tipo di evento, con i reader già pronti (altri tipi di eventi si aggiungono qui)
+        this.handlers = new EventHandlerRegistry(eventSerializer)
+                .register("OrderCreated", OrderCreatedEvent.class, this::processOrderCreatedEvent);
     }
 
-    @KafkaListener(topics = "orders", groupId = "inventory-service")
-    public void consume(ConsumerRecord<String, String> record) {
-        try {
-            // 1. Estrai il payload dall'envelope
-            JsonNode rootNode = new ObjectMapper().readTree(record.value());
-            String eventType = rootNode.get("eventType").asText();
-            String payload = rootNode.get("payload").toString();
-
-            // 2. Elabora l'evento in base al tipo
-            switch (eventType) {
-                case "OrderCreated":
-                    processOrderCreatedEvent(eventSerializer.deserialize(payload, OrderCreatedEvent.class));
-                    break;
-                // Altri tipi di eventi...
-                default:
-                    log.warn("Unknown event type: {}", eventType);
-            }
+    // Listener record per record; con outbox.consumer.batch-mode=true al suo posto parte OrderEventBatchConsumer.
+    // Con outbox.consumer.listeners-enabled=false (prove di carico senza Kafka) non parte nessuno dei due.
+    // Un record che fallisce passa ai topic di retry (orders-retry-0, -1, ...) con attese crescenti,
+    // senza bloccare la partizione; esauriti i tentativi finisce in orders-dlt con il motivo negli header.
+    @RetryableTopic(
+            attempts = "${outbox.consumer.retry-attempts:4}",
+            backoff = @Backoff(
+                    delayExpression = "${outbox.consumer.retry-delay-ms:1000}",
+                    multiplierExpression = "${outbox.consumer.retry-multiplier:2.0}",
+                    maxDelayExpression = "${outbox.consumer.retry-max-delay-ms:60000}"),
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            autoStartDltHandler = "#{'${outbox.consumer.listeners-enabled:true}' == 'true' and '${outbox.consumer.batch-mode:false}' != 'true'}")
+    @KafkaListener(topics = "orders", groupId = "inventory-service",
+            autoStartup = "#{'${outbox.consumer.listeners-enabled:true}' == 'true' and '${outbox.consumer.batch-mode:false}' != 'true'}")
+    public void consume(ConsumerRecord<String, byte[]> record) throws Exception {
+        handle(record);
+    }
+
+    @DltHandler
+    public void handleDeadLetter(ConsumerRecord<String, byte[]> record,
+                                 @Header(name = KafkaHeaders.DLT_EXCEPTION_MESSAGE, required = false) String reason) {
+        log.error("Event moved to dead letter topic {} (key {}): {}", record.topic(), record.key(), reason);
+    }
+
+    /**
+     * Decodifica ed elabora un singolo record, propagando eventuali errori al chiamante.
+     */
+    public void handle(ConsumerRecord<String, byte[]> record) throws Exception {
+        // 1. Decodifica il record in streaming, direttamente nella classe dell'evento
+        DecodedEvent event = envelopeDecoder.decode(record, handlers);
 
-        } catch (Exception e) {
-            log.error("Error processing event", e);
-            // Gestione degli errori: potrebbe essere necessario un meccanismo di dead-letter
+        // 2. Il relay è at-least-once: un messaggio già elaborato non ripete la logica di business
+        String messageId = event.getMessageId();
+        if (messageId != null && deduplicator.isDuplicate(messageId)) {
+            log.debug("Skipping duplicate message {}", messageId);
+            return;
         }
+
+        // 3. Elabora l'evento con il gestore registrato per il suo tipo
+        if (event.isKnown()) {
+            long start = System.nanoTime();
+            event.dispatch();
+            timer("outbox.consumer.process", event).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            // Latenza end-to-end: dall'inserimento nell'outbox alla fine dell'elaborazione
+            if (event.getCreatedAt() > 0) {
+                long endToEnd = Math.max(0, System.currentTimeMillis() - event.getCreatedAt());
+                timer("outbox.consumer.end.to.end", event).record(endToEnd, TimeUnit.MILLISECONDS);
+            }
+            if (messageId != null) {
+                deduplicator.markProcessed(messageId);
+            }
+        } else {
+            log.warn("Unknown event type: {}", event.getEventType());
+        }
+    }
+
+    private Timer timer(String name, DecodedEvent event) {
+        String aggregateType = event.getAggregateType() != null ? event.getAggregateType() : "unknown";
+        return timers.computeIfAbsent(List.of(name, aggregateType, event.getEventType()), key ->
+                Timer.builder(name)
+                        .tag("aggregate.type", aggregateType)
+                        .tag("event.type", event.getEventType())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
     }
 
     private void processOrderCreatedEvent(OrderCreatedEvent event) {
@@ -54,4 +118,4 @@ public class OrderEventConsumer {
 
         log.info("Successfully processed com.example.outbox.domain.event.OrderCreatedEvent for orderId: {}", event.getOrderId());
     }
-}
\ No newline at end of file
+}
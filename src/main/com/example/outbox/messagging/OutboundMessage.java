@@ -0,0 +1,13 @@
+package com.example.outbox.messagging;
+
+/**
+ * Messaggio da pubblicare.
+ *
+ * @param messageId  stabile a ogni ripubblicazione dello stesso evento, usato dai consumer per la deduplica
+ * @param payload    JSON dell'evento, oppure null se il payload è stato spostato nel blob store
+ * @param payloadRef riferimento claim-check al payload nel blob store, oppure null
+ * @param createdAt  istante di creazione dell'evento nell'outbox (epoch millis), per la latenza end-to-end
+ */
+public record OutboundMessage(String messageId, String eventType, String aggregateType, String aggregateId,
+                              String payload, String payloadRef, long createdAt) {
+}
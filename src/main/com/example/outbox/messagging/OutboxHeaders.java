@@ -0,0 +1,19 @@
+package com.example.outbox.messagging;
+
+// Nomi degli header Kafka usati dal formato HEADERS per i metadati dell'evento
+public final class OutboxHeaders {
+    public static final String MESSAGE_ID = "messageId";
+    public static final String EVENT_TYPE = "eventType";
+    public static final String AGGREGATE_TYPE = "aggregateType";
+    public static final String AGGREGATE_ID = "aggregateId";
+    public static final String TIMESTAMP = "timestamp";
+    // Creazione dell'evento nell'outbox in epoch millis, per la latenza end-to-end
+    public static final String CREATED_AT = "createdAt";
+    public static final String CONTENT_TYPE = "contentType";
+    public static final String SCHEMA_ID = "schemaId";
+    // Riferimento claim-check: il valore del record è vuoto e il payload va letto dal blob store
+    public static final String PAYLOAD_REF = "payloadRef";
+
+    private OutboxHeaders() {
+    }
+}
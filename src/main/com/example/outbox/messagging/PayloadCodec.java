@@ -0,0 +1,56 @@
+package com.example.outbox.messagging;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converte il payload JSON salvato nell'outbox nella codifica usata sul filo.
+ *
+ * La conversione verso Smile/CBOR è in streaming, token per token,
+ * senza costruire un albero o un oggetto intermedio.
+ */
+@Component
+public class PayloadCodec {
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final SmileFactory smileFactory = new SmileFactory();
+    private final CBORFactory cborFactory = new CBORFactory();
+
+    public byte[] encode(String json, PayloadEncoding encoding) {
+        if (encoding == PayloadEncoding.JSON) {
+            return json.getBytes(StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length());
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = factoryFor(encoding).createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        } catch (IOException e) {
+            throw new RuntimeException("Error encoding payload as " + encoding, e);
+        }
+        return out.toByteArray();
+    }
+
+    public JsonParser parser(byte[] payload, PayloadEncoding encoding) {
+        try {
+            return factoryFor(encoding).createParser(payload);
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding " + encoding + " payload", e);
+        }
+    }
+
+    private JsonFactory factoryFor(PayloadEncoding encoding) {
+        return switch (encoding) {
+            case SMILE -> smileFactory;
+            case CBOR -> cborFactory;
+            case JSON -> jsonFactory;
+        };
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.outbox.messagging;
+
+// Codifica del payload nel formato HEADERS, indicata dall'header contentType
+public enum PayloadEncoding {
+    JSON("application/json"),
+    SMILE("application/x-jackson-smile"),
+    CBOR("application/cbor");
+
+    private final String contentType;
+
+    PayloadEncoding(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static PayloadEncoding fromContentType(String contentType) {
+        for (PayloadEncoding encoding : values()) {
+            if (encoding.contentType.equals(contentType)) {
+                return encoding;
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.outbox.messagging;
+
+// Chiave dei record Kafka: determina la partizione e quindi l'ordinamento garantito
+public enum RoutingKey {
+    /** Ordine garantito per aggregato (default). */
+    AGGREGATE_ID,
+    /** Distribuzione uniforme sulle partizioni, senza ordine tra gli eventi dello stesso aggregato. */
+    MESSAGE_ID,
+    /** Nessuna chiave: il producer sceglie la partizione (sticky partitioner). */
+    NONE
+}
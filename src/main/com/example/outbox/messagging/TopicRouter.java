@@ -0,0 +1,110 @@
+package com.example.outbox.messagging;
+
+import com.example.outbox.config.OutboxProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sceglie topic, chiave e partizione di ogni messaggio in base a tipo di aggregato e di evento.
+ *
+ * La tabella delle regole (outbox.routing.routes) viene costruita all'avvio; a runtime la
+ * risoluzione è una o due lookup in mappa sulle stringhe del messaggio, senza allocazioni.
+ * Un tipo di aggregato mai visto viene risolto una volta sola (regola per nome semplice
+ * oppure topic di default) e aggiunto alla tabella.
+ *
+ * Per distribuire un aggregato molto attivo su più partizioni basta instradarlo su un topic
+ * con più partizioni: con la chiave AGGREGATE_ID l'ordine per aggregato resta garantito.
+ */
+@Component
+public class TopicRouter {
+
+    private final RoutingKey defaultKey;
+    // Regole configurate, per nome di aggregato così come scritto nella configurazione
+    private final Map<String, AggregateRoutes> configured = new HashMap<>();
+    // Tabella usata a runtime, per tipo di aggregato come arriva nei messaggi
+    private final Map<String, AggregateRoutes> resolved = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TopicRouter(OutboxProperties properties) {
+        this.defaultKey = properties.getRouting().getDefaultKey();
+        for (OutboxProperties.Routing.Route definition : properties.getRouting().getRoutes()) {
+            if (definition.getAggregateType() == null || definition.getTopic() == null) {
+                throw new IllegalStateException("Outbox routes need both aggregateType and topic");
+            }
+            Route route = new Route(definition.getTopic(),
+                    definition.getKey() != null ? definition.getKey() : defaultKey,
+                    definition.getPartition());
+            AggregateRoutes routes = configured.computeIfAbsent(definition.getAggregateType(), type -> new AggregateRoutes());
+            if (definition.getEventType() == null) {
+                routes.fallback = route;
+            } else {
+                routes.byEventType.put(definition.getEventType(), route);
+            }
+        }
+        // Gli eventi senza una regola propria vanno sul topic di default dell'aggregato
+        configured.forEach((aggregateType, routes) -> {
+            if (routes.fallback == null) {
+                routes.fallback = new Route(defaultTopic(simpleName(aggregateType)), defaultKey, null);
+            }
+            resolved.put(aggregateType, routes);
+        });
+    }
+
+    public Route route(OutboundMessage message) {
+        return route(message.aggregateType(), message.eventType());
+    }
+
+    public Route route(String aggregateType, String eventType) {
+        AggregateRoutes routes = resolved.get(aggregateType);
+        if (routes == null) {
+            routes = resolved.computeIfAbsent(aggregateType, this::resolve);
+        }
+        Route route = routes.byEventType.get(eventType);
+        return route != null ? route : routes.fallback;
+    }
+
+    // Prima occorrenza di un tipo di aggregato: regola per nome semplice, altrimenti topic di default
+    private AggregateRoutes resolve(String aggregateType) {
+        String simpleName = simpleName(aggregateType);
+        AggregateRoutes bySimpleName = configured.get(simpleName);
+        if (bySimpleName != null) {
+            return bySimpleName;
+        }
+        AggregateRoutes routes = new AggregateRoutes();
+        routes.fallback = new Route(defaultTopic(simpleName), defaultKey, null);
+        return routes;
+    }
+
+    // "Order" -> "orders"
+    private static String defaultTopic(String simpleName) {
+        return simpleName.toLowerCase(Locale.ROOT) + "s";
+    }
+
+    private static String simpleName(String aggregateType) {
+        return aggregateType.substring(aggregateType.lastIndexOf('.') + 1);
+    }
+
+    private static final class AggregateRoutes {
+        private final Map<String, Route> byEventType = new HashMap<>();
+        private Route fallback;
+    }
+
+    /**
+     * @param partition partizione fissa, oppure null per lasciarla scegliere al producer dalla chiave
+     */
+    public record Route(String topic, RoutingKey key, Integer partition) {
+
+        public String keyOf(OutboundMessage message) {
+            return switch (key) {
+                case AGGREGATE_ID -> message.aggregateId();
+                case MESSAGE_ID -> message.messageId();
+                case NONE -> null;
+            };
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.outbox.messagging;
+
+// Formato dei messaggi pubblicati su Kafka
+public enum WireFormat {
+    /** Envelope JSON con metadati e payload nello stesso documento. */
+    ENVELOPE,
+    /** Metadati negli header Kafka, payload trasmesso così com'è nel valore del record. */
+    HEADERS
+}
@@ -0,0 +1,218 @@
+package com.example.outbox.messagging.dedup;
+
+import com.example.outbox.config.OutboxProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Riconosce i messaggi già elaborati dal consumer (il relay garantisce at-least-once).
+ *
+ * La verifica passa prima da una cache in memoria limitata e con scadenza, poi dalla
+ * tabella processed_messages. I messaggi elaborati entrano subito in cache e vengono
+ * scritti in tabella a lotti: alla fine di ogni poll in modalità batch, a intervalli
+ * regolari in modalità record.
+ */
+@Component
+public class MessageDeduplicator {
+    private static final Logger log = LoggerFactory.getLogger(MessageDeduplicator.class);
+
+    private final ProcessedMessageRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxProperties.Consumer config;
+    private final long ttlNanos;
+
+    // Ordine di inserimento = ordine di scadenza: le voci più vecchie vengono rimosse per prime
+    private final LinkedHashMap<String, Long> cache = new LinkedHashMap<>();
+    // Messaggi del poll corrente già verificati sulla tabella e risultati nuovi
+    private final Set<String> knownAbsent = ConcurrentHashMap.newKeySet();
+    private final Queue<ProcessedMessage> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+
+    private final Counter cacheHits;
+    private final Counter storeHits;
+    private final Counter misses;
+
+    @Autowired
+    public MessageDeduplicator(ProcessedMessageRepository repository, PlatformTransactionManager transactionManager,
+                               OutboxProperties properties, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.config = properties.getConsumer();
+        this.ttlNanos = config.getDedupCacheTtl().toNanos();
+
+        this.cacheHits = Counter.builder("outbox.consumer.dedup").tag("result", "hit").tag("source", "cache").register(meterRegistry);
+        this.storeHits = Counter.builder("outbox.consumer.dedup").tag("result", "hit").tag("source", "store").register(meterRegistry);
+        this.misses = Counter.builder("outbox.consumer.dedup").tag("result", "miss").register(meterRegistry);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dedup-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getDedupFlushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Verifica con una sola query i messaggi di un intero poll, così i controlli
+     * successivi su ciascun record non toccano il database.
+     */
+    public void prefetch(Collection<String> messageIds) {
+        List<String> unknown = new ArrayList<>(messageIds.size());
+        for (String messageId : messageIds) {
+            if (!inCache(messageId)) {
+                unknown.add(messageId);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return;
+        }
+        List<String> existing = repository.findExistingIds(unknown);
+        for (String messageId : existing) {
+            remember(messageId);
+        }
+        unknown.removeAll(existing);
+        knownAbsent.addAll(unknown);
+    }
+
+    /**
+     * Dimentica i messaggi verificati da {@link #prefetch} e non ancora controllati, ad esempio
+     * quelli successivi a un errore: riletti dopo il riposizionamento potrebbero essere stati
+     * elaborati nel frattempo da un altro consumer. Va chiamato alla fine di ogni poll.
+     */
+    public void clearPrefetched() {
+        knownAbsent.clear();
+    }
+
+    /**
+     * @return true se il messaggio è già stato elaborato e va scartato
+     */
+    public boolean isDuplicate(String messageId) {
+        if (inCache(messageId)) {
+            cacheHits.increment();
+            return true;
+        }
+        if (knownAbsent.remove(messageId)) {
+            misses.increment();
+            return false;
+        }
+        if (repository.existsById(messageId)) {
+            storeHits.increment();
+            remember(messageId);
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Registra il messaggio come elaborato: entra subito in cache, in tabella al prossimo flush.
+     */
+    public void markProcessed(String messageId) {
+        remember(messageId);
+        pending.add(new ProcessedMessage(messageId, LocalDateTime.now()));
+    }
+
+    /**
+     * Scrive in tabella, in una sola transazione, tutti i messaggi registrati dall'ultimo flush.
+     */
+    public void flush() {
+        List<ProcessedMessage> batch = new ArrayList<>();
+        ProcessedMessage message;
+        while ((message = pending.poll()) != null) {
+            batch.add(message);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.saveAll(batch));
+        } catch (DataIntegrityViolationException e) {
+            // Un altro consumer (ad esempio dopo un ribilanciamento) ha già registrato
+            // qualcuno di questi messaggi: si inseriscono solo quelli mancanti
+            List<String> ids = batch.stream().map(ProcessedMessage::getId).toList();
+            List<String> existing = repository.findExistingIds(ids);
+            List<ProcessedMessage> missing = batch.stream().filter(m -> !existing.contains(m.getId())).toList();
+            transactionTemplate.executeWithoutResult(status -> repository.saveAll(missing));
+        } catch (RuntimeException e) {
+            // Database non raggiungibile: il lotto verrà riprovato al prossimo flush
+            pending.addAll(batch);
+            throw e;
+        }
+    }
+
+    // Le righe più vecchie della retention non servono più: i duplicati arrivano a ridosso dell'originale
+    @Scheduled(cron = "${outbox.consumer.dedup-cleanup-cron:0 0 * * * ?}")
+    public void purgeExpired() {
+        int deleted = transactionTemplate.execute(status ->
+                repository.deleteProcessedBefore(LocalDateTime.now().minus(config.getDedupRetention())));
+        log.info("Deleted {} expired processed message ids", deleted);
+    }
+
+    private boolean inCache(String messageId) {
+        long now = System.nanoTime();
+        synchronized (cache) {
+            Long expiresAt = cache.get(messageId);
+            return expiresAt != null && expiresAt - now > 0;
+        }
+    }
+
+    private void remember(String messageId) {
+        long now = System.nanoTime();
+        synchronized (cache) {
+            cache.remove(messageId);
+            cache.put(messageId, now + ttlNanos);
+            evict(now);
+        }
+    }
+
+    // Rimuove dalla testa le voci scadute e quelle oltre la dimensione massima
+    private void evict(long now) {
+        var iterator = cache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (cache.size() > config.getDedupCacheSize() || eldest.getValue() - now <= 0) {
+                iterator.remove();
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to persist processed message ids", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.outbox.messagging.dedup;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+// Messaggio già elaborato dal consumer, usato per scartare i duplicati
+@Entity
+@Table(name = "processed_messages")
+public class ProcessedMessage implements Persistable<String> {
+    @Id
+    @Column(name = "message_id")
+    private String messageId;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+
+    // L'ID è già assegnato: senza il flag save() farebbe una SELECT prima dell'INSERT
+    @Transient
+    private boolean isNew = true;
+
+    public ProcessedMessage() {
+    }
+
+    public ProcessedMessage(String messageId, LocalDateTime processedAt) {
+        this.messageId = messageId;
+        this.processedAt = processedAt;
+    }
+
+    @Override
+    public String getId() {
+        return messageId;
+    }
+
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.outbox.messagging.dedup;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProcessedMessageRepository extends JpaRepository<ProcessedMessage, String> {
+
+    // Una sola query per verificare tutti i messaggi di un poll
+    @Query("SELECT p.messageId FROM ProcessedMessage p WHERE p.messageId IN :messageIds")
+    List<String> findExistingIds(@Param("messageIds") Collection<String> messageIds);
+
+    @Modifying
+    @Query("DELETE FROM ProcessedMessage p WHERE p.processedAt < :cutoffDate")
+    int deleteProcessedBefore(@Param("cutoffDate") LocalDateTime cutoffDate);
+}
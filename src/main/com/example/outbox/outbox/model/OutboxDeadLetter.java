@@ -0,0 +1,77 @@
+package com.example.outbox.outbox.model;
+
+import org.springframework.data.domain.Persistable;
+
+// Evento che ha esaurito i tentativi di pubblicazione, spostato fuori dall'outbox
+@Entity
+@Table(name = "outbox_dead_letter")
+public class OutboxDeadLetter implements Persistable<UUID> {
+    // Stesso ID dell'evento originale
+    @Id
+    private UUID id;
+
+    @Column(name = "aggregate_type", nullable = false)
+    private String aggregateType;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private String aggregateId;
+
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    @Column(name = "payload", columnDefinition = "JSONB")
+    private String payload;
+
+    @Column(name = "payload_ref")
+    private String payloadRef;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public OutboxDeadLetter() {
+    }
+
+    public OutboxDeadLetter(OutboxEvent event, int attempts, String lastError) {
+        this.id = event.getId();
+        this.aggregateType = event.getAggregateType();
+        this.aggregateId = event.getAggregateId();
+        this.eventType = event.getEventType();
+        this.payload = event.getPayload();
+        this.payloadRef = event.getPayloadRef();
+        this.createdAt = event.getCreatedAt();
+        this.attempts = attempts;
+        this.lastError = lastError;
+        this.failedAt = LocalDateTime.now();
+    }
+
+    // Getters
+    // ...
+
+    @Override
+    public UUID getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
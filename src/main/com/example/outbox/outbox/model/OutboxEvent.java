@@ -1,11 +1,19 @@
 package com.example.outbox.outbox.model;
 
+import com.example.outbox.util.compression.CompressionAlgorithm;
+import com.example.outbox.util.compression.PayloadCompressor;
+import com.example.outbox.util.compression.PayloadCompressors;
+import com.example.outbox.util.id.IdGenerators;
+import org.springframework.data.domain.Persistable;
+
+import java.nio.charset.StandardCharsets;
+
 // Entità Outbox per salvare gli eventi
 @Entity
 @Table(name = "outbox")
-public class OutboxEvent {
+public class OutboxEvent implements Persistable<UUID> {
+    // ID assegnato alla creazione con il generatore configurato (UUIDv7 ordinati nel tempo)
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
     @Column(name = "aggregate_type", nullable = false)
@@ -17,9 +25,25 @@ public class OutboxEvent {
     @Column(name = "event_type", nullable = false)
     private String eventType;
 
-    @Column(name = "payload", columnDefinition = "JSONB", nullable = false)
+    // Payload in chiaro (JSONB) oppure, sopra la soglia configurata, compresso in payload_compressed
+    @Column(name = "payload", columnDefinition = "JSONB")
     private String payload;
 
+    @Column(name = "payload_compressed", columnDefinition = "BYTEA")
+    private byte[] payloadCompressed;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payload_encoding", nullable = false, length = 16)
+    private CompressionAlgorithm payloadEncoding = CompressionAlgorithm.NONE;
+
+    // Payload decompresso, tenuto fuori dai campi mappati per non rendere l'entità "dirty"
+    @Transient
+    private String decompressedPayload;
+
+    // Claim-check: payload troppo grande spostato nel blob store, qui resta solo il riferimento
+    @Column(name = "payload_ref")
+    private String payloadRef;
+
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
@@ -29,20 +53,121 @@ public class OutboxEvent {
     @Column(name = "processed_at")
     private LocalDateTime processedAt;
 
+    // Lease usato dal relay in modalità cluster: nodo proprietario e scadenza
+    @Column(name = "locked_by")
+    private String lockedBy;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    // Tentativi di pubblicazione falliti: l'evento non viene riletto prima di next_attempt_at
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    // Con l'ID già assegnato, save() farebbe una SELECT per capire se la riga esiste:
+    // il flag indica a Spring Data che l'entità è nuova e va inserita direttamente
+    @Transient
+    private boolean isNew = true;
+
     // Costruttori, getters e setters
     public OutboxEvent() {
     }
 
     public OutboxEvent(String aggregateType, String aggregateId, String eventType, String payload) {
-        this.id = UUID.randomUUID();
+        this.id = IdGenerators.nextId();
         this.aggregateType = aggregateType;
         this.aggregateId = aggregateId;
         this.eventType = eventType;
-        this.payload = payload;
+        storePayload(payload);
         this.createdAt = LocalDateTime.now();
         this.processed = false;
     }
 
+    /**
+     * Crea un evento il cui payload è nel blob store: nella riga e nel messaggio viaggia solo il riferimento.
+     */
+    public static OutboxEvent withPayloadRef(String aggregateType, String aggregateId, String eventType, String payloadRef) {
+        OutboxEvent event = new OutboxEvent();
+        event.id = IdGenerators.nextId();
+        event.aggregateType = aggregateType;
+        event.aggregateId = aggregateId;
+        event.eventType = eventType;
+        event.payloadRef = payloadRef;
+        event.createdAt = LocalDateTime.now();
+        event.processed = false;
+        return event;
+    }
+
     // Getters e setters
     // ...
+
+    /**
+     * @return Il payload JSON, decompresso se la riga lo contiene in forma compressa
+     */
+    public String getPayload() {
+        if (payloadEncoding == CompressionAlgorithm.NONE) {
+            return payload;
+        }
+        if (decompressedPayload == null) {
+            decompressedPayload = PayloadCompressor.decompress(payloadCompressed, payloadEncoding);
+        }
+        return decompressedPayload;
+    }
+
+    public CompressionAlgorithm getPayloadEncoding() {
+        return payloadEncoding;
+    }
+
+    public String getPayloadRef() {
+        return payloadRef;
+    }
+
+    private void storePayload(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        CompressionAlgorithm algorithm = PayloadCompressors.get().algorithmFor(bytes);
+        if (algorithm == CompressionAlgorithm.NONE) {
+            this.payload = json;
+        } else {
+            this.payloadCompressed = PayloadCompressor.compress(bytes, algorithm);
+            this.payloadEncoding = algorithm;
+            this.decompressedPayload = json;
+        }
+    }
+
+    public String getLockedBy() {
+        return lockedBy;
+    }
+
+    public LocalDateTime getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
 }
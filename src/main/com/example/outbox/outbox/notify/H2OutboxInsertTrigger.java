@@ -0,0 +1,32 @@
+package com.example.outbox.outbox.notify;
+
+import com.example.outbox.outbox.service.OutboxWakeupSignal;
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+
+/**
+ * Trigger H2 (FOR EACH STATEMENT) che risveglia il relay dopo un inserimento nell'outbox.
+ * Equivalente in-process del NOTIFY di PostgreSQL, usato in sviluppo e nei test.
+ *
+ * A differenza di NOTIFY, il trigger scatta prima del commit: se il relay non vede ancora
+ * le righe, il backoff riparte comunque dall'attesa minima e le legge al ciclo successivo.
+ *
+ * H2 istanzia il trigger da sé, per questo il segnale è passato tramite un campo statico.
+ */
+public class H2OutboxInsertTrigger implements Trigger {
+
+    private static volatile OutboxWakeupSignal signal;
+
+    static void bind(OutboxWakeupSignal wakeupSignal) {
+        signal = wakeupSignal;
+    }
+
+    @Override
+    public void fire(Connection connection, Object[] oldRow, Object[] newRow) {
+        OutboxWakeupSignal target = signal;
+        if (target != null) {
+            target.signal();
+        }
+    }
+}
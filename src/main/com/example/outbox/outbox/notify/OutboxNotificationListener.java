@@ -0,0 +1,125 @@
+package com.example.outbox.outbox.notify;
+
+import com.example.outbox.outbox.service.OutboxWakeupSignal;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Ascolta le notifiche di inserimento nell'outbox e risveglia il relay.
+ *
+ * - PostgreSQL: una connessione dedicata esegue LISTEN sul canale outbox_insert, lo stesso
+ *   su cui il trigger di outbox.sql e outbox-partitioned.sql invia pg_notify a ogni statement
+ *   di INSERT. Il canale non è configurabile: va cambiato insieme al trigger.
+ * - H2: registra un trigger Java che segnala direttamente il relay nella stessa JVM.
+ *
+ * Le notifiche perse (ad esempio durante una riconnessione) sono coperte
+ * dal polling di riserva con intervallo lungo.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.poller.wakeup", havingValue = "NOTIFY")
+public class OutboxNotificationListener implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(OutboxNotificationListener.class);
+    private static final int NOTIFICATION_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+    // Deve coincidere con il canale di pg_notify nella funzione outbox_notify()
+    static final String CHANNEL = "outbox_insert";
+
+    private final DataSource dataSource;
+    private final OutboxWakeupSignal wakeupSignal;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    @Autowired
+    public OutboxNotificationListener(DataSource dataSource, OutboxWakeupSignal wakeupSignal) {
+        this.dataSource = dataSource;
+        this.wakeupSignal = wakeupSignal;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if ("H2".equalsIgnoreCase(product)) {
+                registerH2Trigger(connection);
+                return;
+            }
+        } catch (SQLException e) {
+            log.error("Unable to set up outbox notifications, relying on fallback polling", e);
+            return;
+        }
+
+        listener = new Thread(this::listenPostgres, "outbox-notify");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void registerH2Trigger(Connection connection) throws SQLException {
+        H2OutboxInsertTrigger.bind(wakeupSignal);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TRIGGER IF NOT EXISTS outbox_insert_notify AFTER INSERT ON outbox "
+                    + "FOR EACH STATEMENT CALL \"" + H2OutboxInsertTrigger.class.getName() + "\"");
+        }
+        log.info("Registered H2 outbox insert trigger");
+    }
+
+    private void listenPostgres() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    // Identificatore tra virgolette: il nome del canale resta esattamente quello di pg_notify
+                    statement.execute("LISTEN \"" + CHANNEL + "\"");
+                }
+                log.info("Listening for outbox notifications on channel {}", CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+                // Risveglia subito il relay per recuperare le righe inserite mentre non eravamo in ascolto
+                wakeupSignal.signal();
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(NOTIFICATION_TIMEOUT_MS);
+                    // Tutte le notifiche ricevute insieme producono un solo risveglio
+                    if (notifications != null && notifications.length > 0) {
+                        wakeupSignal.signal();
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Outbox notification connection lost, reconnecting in {} ms", RECONNECT_DELAY_MS, e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.outbox.outbox.repository;
+
+import com.example.outbox.outbox.model.OutboxDeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.UUID;
+
+// Repository degli eventi finiti in dead letter
+public interface OutboxDeadLetterRepository extends JpaRepository<OutboxDeadLetter, UUID> {
+
+    // Blob del claim-check che un evento in dead letter potrebbe ancora dover ripubblicare
+    @Query("SELECT DISTINCT d.payloadRef FROM com.example.outbox.outbox.model.OutboxDeadLetter d WHERE d.payloadRef IS NOT NULL")
+    List<String> findPayloadRefs();
+}
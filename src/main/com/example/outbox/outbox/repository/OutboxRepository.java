@@ -3,10 +3,99 @@ package com.example.outbox.outbox.repository;
 // Repository per gli eventi dell'Outbox
 public interface OutboxRepository extends JpaRepository<OutboxEvent, UUID> {
 
-    @Query("SELECT o FROM com.example.outbox.outbox.model.OutboxEvent o WHERE o.processed = false ORDER BY o.createdAt ASC LIMIT :limit")
-    List<OutboxEvent> findUnprocessedEvents(@Param("limit") int limit);
+    // Gli eventi in attesa di un nuovo tentativo vengono saltati, e con loro gli eventi successivi
+    // dello stesso aggregato, che altrimenti verrebbero pubblicati prima di quello fallito
+    @Query("SELECT o FROM com.example.outbox.outbox.model.OutboxEvent o WHERE o.processed = false AND o.createdAt < :createdBefore " +
+            "AND (o.nextAttemptAt IS NULL OR o.nextAttemptAt <= :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM com.example.outbox.outbox.model.OutboxEvent b " +
+            "    WHERE b.aggregateType = o.aggregateType AND b.aggregateId = o.aggregateId " +
+            "    AND b.processed = false AND b.nextAttemptAt > :now AND b.createdAt < o.createdAt) " +
+            "ORDER BY o.createdAt ASC LIMIT :limit")
+    List<OutboxEvent> findUnprocessedEvents(@Param("now") LocalDateTime now, @Param("createdBefore") LocalDateTime createdBefore,
+                                            @Param("limit") int limit);
+
+    // Un evento precedente dello stesso aggregato è ancora da pubblicare (in volo, fallito o in attesa del poller)
+    @Query("SELECT COUNT(o) > 0 FROM com.example.outbox.outbox.model.OutboxEvent o " +
+            "WHERE o.aggregateType = :aggregateType AND o.aggregateId = :aggregateId " +
+            "AND o.processed = false AND o.createdAt < :createdAt")
+    boolean existsEarlierUnprocessed(@Param("aggregateType") String aggregateType, @Param("aggregateId") String aggregateId,
+                                     @Param("createdAt") LocalDateTime createdAt);
 
     @Modifying
     @Query("UPDATE com.example.outbox.outbox.model.OutboxEvent o SET o.processed = true, o.processedAt = :now WHERE o.id IN :ids")
     void markAsProcessed(@Param("ids") List<UUID> ids, @Param("now") LocalDateTime now);
+
+    long countByProcessedFalse();
+
+    // Conteggio limitato degli eventi in attesa: si ferma a :limit righe invece di contarle tutte
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM outbox WHERE processed = false LIMIT :limit) pending", nativeQuery = true)
+    long countUnprocessedUpTo(@Param("limit") long limit);
+
+    // Arretrato per tipo di aggregato e di evento, per le metriche
+    @Query("SELECT o.aggregateType AS aggregateType, o.eventType AS eventType, COUNT(o) AS pending, MIN(o.createdAt) AS oldestCreatedAt " +
+            "FROM com.example.outbox.outbox.model.OutboxEvent o WHERE o.processed = false GROUP BY o.aggregateType, o.eventType")
+    List<BacklogStats> findBacklogStats();
+
+    interface BacklogStats {
+        String getAggregateType();
+
+        String getEventType();
+
+        long getPending();
+
+        LocalDateTime getOldestCreatedAt();
+    }
+
+    // Blob del claim-check citati da eventi non ancora pubblicati
+    @Query("SELECT DISTINCT o.payloadRef FROM com.example.outbox.outbox.model.OutboxEvent o " +
+            "WHERE o.processed = false AND o.payloadRef IS NOT NULL")
+    List<String> findUnprocessedPayloadRefs();
+
+    // Pulizia incrementale: blocchi di eventi processati ordinati per id (keyset)
+    @Query("SELECT o.id FROM com.example.outbox.outbox.model.OutboxEvent o " +
+            "WHERE o.processed = true AND o.processedAt < :cutoffDate AND o.id > :afterId ORDER BY o.id ASC LIMIT :limit")
+    List<UUID> findProcessedIdsBefore(@Param("cutoffDate") LocalDateTime cutoffDate, @Param("afterId") UUID afterId,
+                                      @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM com.example.outbox.outbox.model.OutboxEvent o WHERE o.id IN :ids")
+    int deleteByIds(@Param("ids") List<UUID> ids);
+
+    // Modalità cluster: blocca le righe libere (o con lease scaduto) saltando quelle
+    // già bloccate da altri nodi. Le righe di un aggregato con un lease attivo
+    // vengono escluse per non pubblicarne gli eventi in parallelo su nodi diversi.
+    @Query(value = "SELECT * FROM outbox o " +
+            "WHERE o.processed = false " +
+            "AND o.created_at < :createdBefore " +
+            "AND (o.lease_until IS NULL OR o.lease_until < :now) " +
+            "AND (o.next_attempt_at IS NULL OR o.next_attempt_at <= :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM outbox l " +
+            "    WHERE l.aggregate_type = o.aggregate_type AND l.aggregate_id = o.aggregate_id " +
+            "    AND l.processed = false " +
+            "    AND (l.lease_until >= :now OR (l.next_attempt_at > :now AND l.created_at < o.created_at))) " +
+            "ORDER BY o.created_at ASC " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockClaimableEvents(@Param("now") LocalDateTime now, @Param("createdBefore") LocalDateTime createdBefore,
+                                          @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE com.example.outbox.outbox.model.OutboxEvent o SET o.lockedBy = :owner, o.leaseUntil = :leaseUntil WHERE o.id IN :ids")
+    void acquireLease(@Param("ids") List<UUID> ids, @Param("owner") String owner, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("UPDATE com.example.outbox.outbox.model.OutboxEvent o SET o.processed = true, o.processedAt = :now, o.lockedBy = null, o.leaseUntil = null " +
+            "WHERE o.id IN :ids AND o.lockedBy = :owner")
+    int markAsProcessedByOwner(@Param("ids") List<UUID> ids, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE com.example.outbox.outbox.model.OutboxEvent o SET o.lockedBy = null, o.leaseUntil = null " +
+            "WHERE o.id IN :ids AND o.lockedBy = :owner")
+    int releaseLease(@Param("ids") List<UUID> ids, @Param("owner") String owner);
+
+    // Registra un tentativo fallito e rimanda l'evento; l'eventuale lease viene rilasciato
+    @Modifying
+    @Query("UPDATE com.example.outbox.outbox.model.OutboxEvent o SET o.attempts = o.attempts + 1, o.nextAttemptAt = :nextAttemptAt, " +
+            "o.lastError = :error, o.lockedBy = null, o.leaseUntil = null WHERE o.id = :id")
+    void recordFailure(@Param("id") UUID id, @Param("error") String error, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
 }
\ No newline at end of file
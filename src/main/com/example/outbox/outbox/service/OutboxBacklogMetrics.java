@@ -0,0 +1,85 @@
+package com.example.outbox.outbox.service;
+
+import com.example.outbox.outbox.repository.OutboxRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gauge dell'arretrato dell'outbox, per tipo di aggregato e di evento.
+ *
+ * - outbox.backlog: eventi non ancora processati
+ * - outbox.backlog.oldest.age: età in secondi dell'evento in attesa più vecchio
+ *
+ * I valori vengono ricalcolati a intervalli con una sola query raggruppata,
+ * non a ogni lettura delle metriche: uno scrape frequente non pesa sul database.
+ */
+@Component
+public class OutboxBacklogMetrics {
+    private static final Logger log = LoggerFactory.getLogger(OutboxBacklogMetrics.class);
+
+    private final OutboxRepository outboxRepository;
+    private final MeterRegistry meterRegistry;
+    private final Map<List<String>, Backlog> backlogs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public OutboxBacklogMetrics(OutboxRepository outboxRepository, MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.metrics.backlog-refresh-ms:15000}")
+    public void refresh() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Set<List<String>> seen = new HashSet<>();
+            for (OutboxRepository.BacklogStats stats : outboxRepository.findBacklogStats()) {
+                List<String> key = List.of(stats.getAggregateType(), stats.getEventType());
+                seen.add(key);
+                Backlog backlog = backlogs.computeIfAbsent(key, this::register);
+                backlog.pending = stats.getPending();
+                backlog.oldestAgeSeconds = Duration.between(stats.getOldestCreatedAt(), now).toMillis() / 1000.0;
+            }
+            // I tipi senza più eventi in attesa restano a zero invece di sparire
+            backlogs.forEach((key, backlog) -> {
+                if (!seen.contains(key)) {
+                    backlog.pending = 0;
+                    backlog.oldestAgeSeconds = 0;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to refresh outbox backlog metrics", e);
+        }
+    }
+
+    private Backlog register(List<String> key) {
+        Backlog backlog = new Backlog();
+        Tags tags = Tags.of("aggregate.type", key.get(0), "event.type", key.get(1));
+        Gauge.builder("outbox.backlog", backlog, b -> b.pending)
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("outbox.backlog.oldest.age", backlog, b -> b.oldestAgeSeconds)
+                .tags(tags)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        return backlog;
+    }
+
+    private static final class Backlog {
+        private volatile double pending;
+        private volatile double oldestAgeSeconds;
+    }
+}
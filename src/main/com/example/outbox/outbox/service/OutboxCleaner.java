@@ -1,30 +1,184 @@
 package com.example.outbox.outbox.service;
 
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pulizia incrementale dell'outbox.
+ *
+ * Invece di una singola DELETE di massa, elimina gli eventi processati più vecchi
+ * della retention a piccoli blocchi ordinati per id (keyset), ognuno nella propria
+ * transazione breve, rispettando un budget di righe al secondo. Se l'arretrato del
+ * relay cresce la pulizia si ferma fino al giro successivo; se il database rallenta
+ * si concede una pausa tra un blocco e l'altro.
+ *
+ * Con throttle e pause un giro può durare a lungo: gira quindi su un thread dedicato,
+ * e il cron si limita ad avviarlo. Il thread condiviso dei job @Scheduled (metriche
+ * dell'arretrato, pulizia dei duplicati e dei blob, partizioni) non viene mai bloccato.
+ */
+// In modalità PARTITIONED la retention è gestita da OutboxPartitionManager
 @Component
-public class OutboxCleaner {
+@ConditionalOnProperty(name = "outbox.storage.mode", havingValue = "TABLE", matchIfMissing = true)
+public class OutboxCleaner implements SmartLifecycle {
     private static final Logger log = LoggerFactory.getLogger(OutboxCleaner.class);
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+    // L'arretrato viene controllato una volta per intervallo, non prima di ogni blocco
+    private static final long BACKLOG_CHECK_INTERVAL_NANOS = Duration.ofSeconds(5).toNanos();
+
+    private final OutboxRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxProperties.Cleaner config;
+    private final Duration retention;
+    // Richiesta di un giro: al massimo una in attesa, le altre si fondono con questa
+    private final Semaphore requests = new Semaphore(0);
 
-    private final EntityManager entityManager;
+    private volatile boolean running;
+    private Thread worker;
+
+    private final Counter deletedCounter;
+    private final Counter backlogPauses;
+    private final Counter latencyPauses;
+    private final Timer chunkTimer;
+    private final AtomicLong lastRunDeleted = new AtomicLong();
 
     @Autowired
-    public OutboxCleaner(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public OutboxCleaner(OutboxRepository outboxRepository, PlatformTransactionManager transactionManager,
+                         OutboxProperties properties, MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.config = properties.getCleaner();
+        this.retention = properties.getStorage().getRetention();
+
+        this.deletedCounter = Counter.builder("outbox.cleaner.deleted").register(meterRegistry);
+        this.backlogPauses = Counter.builder("outbox.cleaner.pauses").tag("reason", "backlog").register(meterRegistry);
+        this.latencyPauses = Counter.builder("outbox.cleaner.pauses").tag("reason", "latency").register(meterRegistry);
+        this.chunkTimer = Timer.builder("outbox.cleaner.chunk").register(meterRegistry);
+        meterRegistry.gauge("outbox.cleaner.last.run.deleted", lastRunDeleted);
     }
 
-    @Scheduled(cron = "0 0 0 * * ?") // Ogni giorno a mezzanotte
-    @Transactional
+    @Scheduled(cron = "${outbox.cleaner.cron:0 */5 * * * ?}")
     public void cleanOutbox() {
-        log.info("Starting outbox cleanup job");
+        // Se il giro precedente è ancora in corso, il prossimo parte appena finisce
+        if (requests.availablePermits() == 0) {
+            requests.release();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "outbox-cleaner");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                requests.acquire();
+                requests.drainPermits();
+                log.info("Starting outbox cleanup job");
+                long deleted = purge(LocalDateTime.now().minus(retention));
+                lastRunDeleted.set(deleted);
+                log.info("Deleted {} processed events from outbox", deleted);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Outbox cleanup job failed", e);
+            }
+        }
+    }
+
+    private long purge(LocalDateTime cutoffDate) throws InterruptedException {
+        long nanosPerRow = 1_000_000_000L / Math.max(1, config.getRowsPerSecond());
+        long maxChunkNanos = config.getMaxChunkLatency().toNanos();
+        UUID lastId = MIN_ID;
+        long total = 0;
+        long lastBacklogCheck = System.nanoTime() - BACKLOG_CHECK_INTERVAL_NANOS;
+
+        while (running) {
+            // Se il relay è in ritardo la pulizia non deve competere con la pubblicazione:
+            // il giro si interrompe e riprende dal prossimo avvio del cron.
+            // Il conteggio si ferma a maxBacklog + 1: non scandisce mai tutto l'arretrato
+            if (System.nanoTime() - lastBacklogCheck >= BACKLOG_CHECK_INTERVAL_NANOS) {
+                lastBacklogCheck = System.nanoTime();
+                if (outboxRepository.countUnprocessedUpTo(config.getMaxBacklog() + 1) > config.getMaxBacklog()) {
+                    backlogPauses.increment();
+                    log.info("Outbox backlog above {}, pausing cleanup", config.getMaxBacklog());
+                    return total;
+                }
+            }
+
+            long start = System.nanoTime();
+            UUID from = lastId;
+            List<UUID> ids = transactionTemplate.execute(status -> {
+                List<UUID> chunk = outboxRepository.findProcessedIdsBefore(cutoffDate, from, config.getChunkSize());
+                if (!chunk.isEmpty()) {
+                    outboxRepository.deleteByIds(chunk);
+                }
+                return chunk;
+            });
+            long elapsed = System.nanoTime() - start;
+            chunkTimer.record(Duration.ofNanos(elapsed));
+
+            if (ids == null || ids.isEmpty()) {
+                return total;
+            }
+            total += ids.size();
+            deletedCounter.increment(ids.size());
+            lastId = ids.get(ids.size() - 1);
 
-        // Calcola la data limite (es. eventi più vecchi di 7 giorni)
-        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(7);
+            if (ids.size() < config.getChunkSize()) {
+                return total;
+            }
 
-        // Elimina gli eventi già processati più vecchi della data limite
-        int deleted = entityManager.createQuery(
-                        "DELETE FROM com.example.outbox.outbox.model.OutboxEvent o WHERE o.processed = true AND o.processedAt < :cutoffDate")
-                .setParameter("cutoffDate", cutoffDate)
-                .executeUpdate();
+            // Un blocco lento indica un database sotto carico: si lascia respirare
+            if (elapsed > maxChunkNanos) {
+                latencyPauses.increment();
+                log.debug("Cleanup chunk took {} ms, pausing cleanup", elapsed / 1_000_000);
+                Thread.sleep(config.getPauseDuration().toMillis());
+                continue;
+            }
 
-        log.info("Deleted {} processed events from outbox", deleted);
+            // Rispetta il budget di righe al secondo
+            long budgetNanos = ids.size() * nanosPerRow;
+            if (budgetNanos > elapsed) {
+                Thread.sleep((budgetNanos - elapsed) / 1_000_000);
+            }
+        }
+        return total;
     }
 }
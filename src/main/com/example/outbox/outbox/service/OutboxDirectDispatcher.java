@@ -0,0 +1,129 @@
+package com.example.outbox.outbox.service;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.MessagePublisher;
+import com.example.outbox.outbox.model.OutboxEvent;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Percorso veloce dell'outbox: pubblica un evento subito dopo il commit
+ * della transazione che lo ha salvato, senza attendere il ciclo del poller.
+ *
+ * Gli eventi confermati dal broker vengono marcati come processati in batch.
+ * Se la pubblicazione fallisce o il processo cade prima dell'ack, la riga resta
+ * non processata e viene ripresa da {@link OutboxPoller} allo scadere del periodo
+ * di grazia: la garanzia at-least-once resta quella del poller.
+ *
+ * Il percorso veloce non rispetta l'ordine da solo: se un evento precedente dello stesso
+ * aggregato non è ancora processato (in volo, fallito o in attesa del poller), l'invio
+ * diretto viene saltato e l'evento segue il precedente attraverso il poller.
+ */
+@Component
+public class OutboxDirectDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(OutboxDirectDispatcher.class);
+
+    private final MessagePublisher messagePublisher;
+    private final OutboxRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Queue<UUID> acked = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+
+    @Autowired
+    public OutboxDirectDispatcher(MessagePublisher messagePublisher, OutboxRepository outboxRepository,
+                                  PlatformTransactionManager transactionManager, OutboxProperties properties) {
+        this.messagePublisher = messagePublisher;
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = properties.getDirectDispatch().isEnabled();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-direct-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            long interval = properties.getDirectDispatch().getFlushInterval().toMillis();
+            flusher.scheduleWithFixedDelay(this::flushAcked, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Registra la pubblicazione dell'evento al commit della transazione corrente.
+     * Senza una transazione attiva, o con il percorso veloce disabilitato, non fa nulla.
+     */
+    public void dispatchAfterCommit(OutboxEvent event) {
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(event);
+            }
+        });
+    }
+
+    private void publish(OutboxEvent event) {
+        UUID eventId = event.getId();
+        try {
+            if (outboxRepository.existsEarlierUnprocessed(event.getAggregateType(), event.getAggregateId(), event.getCreatedAt())) {
+                log.debug("Event {} has an earlier unprocessed event for its aggregate, leaving it to the poller", eventId);
+                return;
+            }
+            messagePublisher.publish(OutboxMessages.toMessage(event)).whenComplete((result, ex) -> {
+                if (ex == null) {
+                    acked.add(eventId);
+                } else {
+                    log.warn("Direct dispatch of event {} failed, leaving it to the poller", eventId, ex);
+                }
+            });
+        } catch (Exception e) {
+            // La transazione è già confermata: l'evento verrà pubblicato dal poller
+            log.warn("Direct dispatch of event {} failed, leaving it to the poller", eventId, e);
+        }
+    }
+
+    private void flushAcked() {
+        List<UUID> ids = new ArrayList<>();
+        UUID id;
+        while ((id = acked.poll()) != null) {
+            ids.add(id);
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    outboxRepository.markAsProcessed(ids, LocalDateTime.now()));
+            log.debug("Marked {} directly dispatched events as processed", ids.size());
+        } catch (Exception e) {
+            // Le righe restano non processate: il poller le ripubblicherà (at-least-once)
+            log.error("Failed to mark {} directly dispatched events as processed", ids.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushAcked();
+    }
+}
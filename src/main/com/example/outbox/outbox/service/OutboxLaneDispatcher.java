@@ -0,0 +1,315 @@
+package com.example.outbox.outbox.service;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.MessagePublisher;
+import com.example.outbox.outbox.model.OutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Distribuisce gli eventi dell'outbox su N corsie (lane) parallele.
+ *
+ * Ogni evento viene assegnato a una corsia in base all'hash dell'aggregateId:
+ * gli eventi dello stesso aggregato finiscono sempre sulla stessa corsia e vengono
+ * pubblicati in ordine, mentre aggregati diversi procedono in parallelo.
+ * Dopo un errore la corsia non invia più gli eventi successivi dello stesso aggregato,
+ * che restano nell'outbox fino al ciclo successivo; gli altri aggregati proseguono.
+ *
+ * Ogni corsia consegna i propri eventi al publisher a lotti ({@link MessagePublisher#publishBatch}),
+ * così il publisher può inviarli insieme invece che uno alla volta.
+ */
+@Component
+public class OutboxLaneDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(OutboxLaneDispatcher.class);
+
+    private final MessagePublisher messagePublisher;
+    private final Semaphore window;
+    private final int chunkSize;
+    private final Lane[] lanes;
+
+    @Autowired
+    public OutboxLaneDispatcher(MessagePublisher messagePublisher, OutboxProperties properties, MeterRegistry meterRegistry) {
+        this.messagePublisher = messagePublisher;
+        // La finestra di invii in volo è condivisa tra tutte le corsie
+        this.window = new Semaphore(properties.getRelay().getMaxInFlight());
+
+        int laneCount = properties.getRelay().getLanes();
+        // Ogni corsia può avere in volo un blocco intero senza esaurire da sola la finestra
+        this.chunkSize = Math.max(1, properties.getRelay().getMaxInFlight() / laneCount);
+        int queueDepth = properties.getRelay().getLaneQueueDepth();
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, queueDepth, meterRegistry);
+        }
+    }
+
+    /**
+     * Avvia la pubblicazione di un lotto di eventi sulle corsie.
+     * Gli ID confermati dal broker si accumulano nel {@link Dispatch} restituito.
+     */
+    public Dispatch dispatch(List<OutboxEvent> events) {
+        List<List<OutboxEvent>> byLane = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            byLane.add(new ArrayList<>());
+        }
+        for (OutboxEvent event : events) {
+            byLane.get(laneOf(event.getAggregateId())).add(event);
+        }
+
+        Dispatch dispatch = new Dispatch(events);
+        List<CompletableFuture<Void>> laneFutures = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            List<OutboxEvent> laneEvents = byLane.get(i);
+            if (!laneEvents.isEmpty()) {
+                laneFutures.add(lanes[i].submit(laneEvents, dispatch));
+            }
+        }
+        dispatch.completion = CompletableFuture.allOf(laneFutures.toArray(new CompletableFuture[0]));
+        return dispatch;
+    }
+
+    int laneOf(String aggregateId) {
+        return Math.floorMod(aggregateId.hashCode(), lanes.length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+    }
+
+    /**
+     * Stato di un lotto in pubblicazione: coda degli ID confermati, errori per evento
+     * e completamento di tutte le corsie.
+     *
+     * Un ack entra nella coda solo quando anche gli eventi precedenti dello stesso aggregato
+     * sono confermati. Dopo un errore gli eventi successivi dello stesso aggregato non vengono
+     * mai considerati confermati, anche se il broker li ha ricevuti: restano nell'outbox e
+     * vengono ripubblicati dopo quello fallito (i consumer deduplicano per messageId).
+     */
+    public static class Dispatch {
+        private final Queue<UUID> acked = new ConcurrentLinkedQueue<>();
+        private final Map<UUID, Throwable> failed = new ConcurrentHashMap<>();
+        // Sequenza dell'aggregato di ciascun evento, nell'ordine del lotto
+        private final Map<UUID, AggregateSequence> sequences = new HashMap<>();
+        private volatile boolean cancelled;
+        private CompletableFuture<Void> completion;
+
+        Dispatch(List<OutboxEvent> events) {
+            Map<String, AggregateSequence> byAggregate = new HashMap<>();
+            for (OutboxEvent event : events) {
+                AggregateSequence sequence = byAggregate.computeIfAbsent(
+                        event.getAggregateType() + '/' + event.getAggregateId(), key -> new AggregateSequence());
+                sequence.ids.add(event.getId());
+                sequences.put(event.getId(), sequence);
+            }
+        }
+
+        /**
+         * @return Completato quando nessun invio del lotto è più in volo
+         */
+        public CompletableFuture<Void> completion() {
+            return completion;
+        }
+
+        public List<UUID> drainAcked() {
+            List<UUID> ids = new ArrayList<>();
+            UUID id;
+            while ((id = acked.poll()) != null) {
+                ids.add(id);
+            }
+            return ids;
+        }
+
+        public boolean hasAcked(int count) {
+            return acked.size() >= count;
+        }
+
+        public Map<UUID, Throwable> failures() {
+            return failed;
+        }
+
+        /**
+         * Interrompe il lotto: le corsie non inviano più nulla, nemmeno i blocchi ancora in coda.
+         * Gli invii già in volo si concludono normalmente e completano {@link #completion()}.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        // Un evento precedente dello stesso aggregato è fallito
+        boolean isBlocked(UUID eventId) {
+            return sequences.get(eventId).isFailed();
+        }
+
+        void ack(UUID eventId) {
+            sequences.get(eventId).confirm(eventId, acked);
+        }
+
+        void fail(UUID eventId, Throwable error) {
+            failed.put(eventId, error);
+            sequences.get(eventId).fail(eventId);
+        }
+    }
+
+    // Eventi di un aggregato nel lotto, in ordine: gli ack vengono rilasciati come prefisso confermato
+    private static final class AggregateSequence {
+        private final List<UUID> ids = new ArrayList<>();
+        private final Set<UUID> confirmed = new HashSet<>();
+        private int next;
+        private int failedAt = Integer.MAX_VALUE;
+
+        synchronized void confirm(UUID eventId, Queue<UUID> acked) {
+            confirmed.add(eventId);
+            while (next < Math.min(ids.size(), failedAt) && confirmed.remove(ids.get(next))) {
+                acked.add(ids.get(next++));
+            }
+        }
+
+        synchronized void fail(UUID eventId) {
+            failedAt = Math.min(failedAt, ids.indexOf(eventId));
+        }
+
+        synchronized boolean isFailed() {
+            return failedAt != Integer.MAX_VALUE;
+        }
+    }
+
+    private class Lane {
+        private final int index;
+        private final ThreadPoolExecutor executor;
+        private final Counter published;
+        private final Counter failures;
+        private final Counter rejected;
+
+        Lane(int index, int queueDepth, MeterRegistry meterRegistry) {
+            this.index = index;
+            AtomicInteger threads = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueDepth),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "outbox-lane-" + index + "-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+            String lane = String.valueOf(index);
+            this.published = Counter.builder("outbox.lane.published").tag("lane", lane).register(meterRegistry);
+            this.failures = Counter.builder("outbox.lane.failures").tag("lane", lane).register(meterRegistry);
+            this.rejected = Counter.builder("outbox.lane.rejected").tag("lane", lane).register(meterRegistry);
+            Gauge.builder("outbox.lane.queue.depth", executor, e -> e.getQueue().size())
+                    .tag("lane", lane)
+                    .register(meterRegistry);
+        }
+
+        CompletableFuture<Void> submit(List<OutboxEvent> events, Dispatch dispatch) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            try {
+                executor.execute(() -> publish(events, dispatch, done));
+            } catch (RejectedExecutionException e) {
+                // Corsia satura: gli eventi restano nell'outbox e verranno ripresi al prossimo ciclo
+                rejected.increment();
+                log.warn("Outbox lane {} is full, {} events deferred", index, events.size());
+                done.complete(null);
+            }
+            return done;
+        }
+
+        private void publish(List<OutboxEvent> events, Dispatch dispatch, CompletableFuture<Void> done) {
+            AtomicInteger remaining = new AtomicInteger(1);
+            Runnable release = () -> {
+                if (remaining.decrementAndGet() == 0) {
+                    done.complete(null);
+                }
+            };
+
+            // Gli eventi della corsia passano al publisher a blocchi, ciascuno entro la finestra di invii in volo.
+            // Un lotto annullato dal poller (timeout degli ack) non invia più nulla
+            int next = 0;
+            while (next < events.size() && !dispatch.isCancelled()) {
+                List<OutboxEvent> chunk = new ArrayList<>(chunkSize);
+                while (next < events.size() && chunk.size() < chunkSize) {
+                    OutboxEvent event = events.get(next++);
+                    // Dopo un errore gli eventi successivi dello stesso aggregato non vengono inviati,
+                    // per non pubblicarli prima di quello fallito
+                    if (!dispatch.isBlocked(event.getId())) {
+                        chunk.add(event);
+                    }
+                }
+                if (chunk.isEmpty()) {
+                    continue;
+                }
+                try {
+                    window.acquire(chunk.size());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (dispatch.isCancelled()) {
+                    window.release(chunk.size());
+                    break;
+                }
+
+                List<CompletableFuture<Void>> results;
+                try {
+                    results = messagePublisher.publishBatch(chunk.stream().map(OutboxMessages::toMessage).toList());
+                } catch (Exception e) {
+                    // Errore dell'intero blocco: la corsia si ferma fino al ciclo successivo
+                    window.release(chunk.size());
+                    failures.increment(chunk.size());
+                    chunk.forEach(event -> dispatch.fail(event.getId(), e));
+                    log.error("Failed to publish {} events on lane {}", chunk.size(), index, e);
+                    break;
+                }
+                remaining.addAndGet(chunk.size());
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    UUID eventId = chunk.get(i).getId();
+                    results.get(i).whenComplete((result, ex) -> {
+                        window.release();
+                        if (ex == null) {
+                            published.increment();
+                            dispatch.ack(eventId);
+                        } else {
+                            // L'evento rimarrà non processato e verrà riprovato nel prossimo ciclo
+                            failures.increment();
+                            dispatch.fail(eventId, ex);
+                            log.error("Broker rejected event {} on lane {}", eventId, index, ex);
+                        }
+                        release.run();
+                    });
+                }
+            }
+            release.run();
+        }
+    }
+}
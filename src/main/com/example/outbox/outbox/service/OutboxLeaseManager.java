@@ -0,0 +1,90 @@
+package com.example.outbox.outbox.service;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.outbox.model.OutboxEvent;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Gestisce i lease sulle righe dell'outbox quando il relay gira su più nodi.
+ *
+ * Ogni nodo reclama un lotto disgiunto di eventi con SELECT ... FOR UPDATE SKIP LOCKED
+ * e vi scrive sopra il proprio identificativo e la scadenza del lease. La transazione
+ * di claim è breve e indipendente, così gli altri nodi vedono subito il lease.
+ * Se un nodo cade, allo scadere del lease le sue righe tornano reclamabili.
+ */
+@Component
+public class OutboxLeaseManager {
+    private static final Logger log = LoggerFactory.getLogger(OutboxLeaseManager.class);
+
+    private final OutboxRepository outboxRepository;
+    private final Duration leaseDuration;
+    private final String nodeId;
+
+    @Autowired
+    public OutboxLeaseManager(OutboxRepository outboxRepository, OutboxProperties properties) {
+        this.outboxRepository = outboxRepository;
+        this.leaseDuration = properties.getRelay().getLeaseDuration();
+        this.nodeId = resolveNodeId(properties.getRelay().getNodeId());
+        log.info("Outbox relay node id: {}", nodeId);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<OutboxEvent> claimBatch(LocalDateTime createdBefore, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = outboxRepository.lockClaimableEvents(now, createdBefore, limit);
+
+        if (!events.isEmpty()) {
+            List<UUID> ids = events.stream().map(OutboxEvent::getId).toList();
+            outboxRepository.acquireLease(ids, nodeId, now.plus(leaseDuration));
+            log.debug("Node {} claimed {} outbox events", nodeId, ids.size());
+        }
+        return events;
+    }
+
+    // Nella transazione breve del chiamante, o in una propria: mai in quella del ciclo di pubblicazione
+    @Transactional(propagation = Propagation.REQUIRED)
+    public int complete(List<UUID> ids) {
+        int updated = outboxRepository.markAsProcessedByOwner(ids, nodeId, LocalDateTime.now());
+        if (updated < ids.size()) {
+            // Il lease è scaduto durante la pubblicazione ed è stato ripreso da un altro nodo:
+            // gli eventi verranno ripubblicati (semantica at-least-once)
+            log.warn("Node {} lost the lease on {} outbox events", nodeId, ids.size() - updated);
+        }
+        return updated;
+    }
+
+    @Transactional(propagation = Propagation.REQUIRED)
+    public void release(List<UUID> ids) {
+        outboxRepository.releaseLease(ids, nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private static String resolveNodeId(String configured) {
+        if (StringUtils.hasText(configured)) {
+            return configured;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.outbox.outbox.service;
+
+import com.example.outbox.messagging.OutboundMessage;
+import com.example.outbox.outbox.model.OutboxEvent;
+
+import java.time.ZoneId;
+
+// Conversione degli eventi dell'outbox nei messaggi da pubblicare
+final class OutboxMessages {
+
+    private OutboxMessages() {
+    }
+
+    // L'ID della riga è il messageId: resta lo stesso a ogni ripubblicazione
+    static OutboundMessage toMessage(OutboxEvent event) {
+        return new OutboundMessage(
+                event.getId().toString(),
+                event.getEventType(),
+                event.getAggregateType(),
+                event.getAggregateId(),
+                event.getPayload(),
+                event.getPayloadRef(),
+                event.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+        );
+    }
+}
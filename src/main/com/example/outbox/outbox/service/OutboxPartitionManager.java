@@ -0,0 +1,184 @@
+package com.example.outbox.outbox.service;
+
+import com.example.outbox.config.OutboxProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Gestisce le partizioni giornaliere della tabella outbox (vedi outbox-partitioned.sql).
+ *
+ * Crea in anticipo le partizioni dei prossimi giorni e, al posto della DELETE di massa,
+ * stacca ed elimina le partizioni più vecchie della retention in cui tutte le righe
+ * risultano processate. Una partizione con eventi ancora pendenti viene conservata.
+ *
+ * Ogni partizione viene gestita a sé: un errore su una non impedisce le altre operazioni.
+ * Senza partizione DEFAULT le partizioni scadute vengono staccate con DETACH CONCURRENTLY,
+ * senza bloccare in esclusiva la tabella outbox. Se una partizione DEFAULT esiste (non è
+ * prevista dallo script) la CONCURRENTLY non è ammessa: il distacco avviene con un
+ * lock_timeout breve, e le righe del giorno finite nella DEFAULT vengono spostate nella
+ * partizione nuova al momento di crearla.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.storage.mode", havingValue = "PARTITIONED")
+public class OutboxPartitionManager {
+    private static final Logger log = LoggerFactory.getLogger(OutboxPartitionManager.class);
+    private static final String PARTITION_PREFIX = "outbox_p";
+    private static final String DEFAULT_PARTITION = "outbox_default";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String DETACH_LOCK_TIMEOUT = "5s";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int premakeDays;
+    private final Duration retention;
+
+    @Autowired
+    public OutboxPartitionManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  OutboxProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.premakeDays = properties.getStorage().getPremakeDays();
+        this.retention = properties.getStorage().getRetention();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${outbox.storage.partition-cron:0 0 * * * ?}")
+    public void maintainPartitions() {
+        createUpcomingPartitions();
+        dropExpiredPartitions();
+    }
+
+    void createUpcomingPartitions() {
+        LocalDate today = LocalDate.now();
+        for (int day = 0; day <= premakeDays; day++) {
+            LocalDate from = today.plusDays(day);
+            try {
+                createPartition(from);
+            } catch (DataAccessException e) {
+                log.error("Could not create outbox partition for {}", from, e);
+            }
+        }
+        log.debug("Outbox partitions ensured up to {}", today.plusDays(premakeDays));
+    }
+
+    private void createPartition(LocalDate from) {
+        String partition = PARTITION_PREFIX + from.format(PARTITION_SUFFIX);
+        if (exists(partition)) {
+            return;
+        }
+        String bounds = " PARTITION OF outbox FOR VALUES FROM ('" + from + "') TO ('" + from.plusDays(1) + "')";
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = from.plusDays(1).atStartOfDay();
+        if (!defaultHoldsRows(start, end)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + bounds);
+            return;
+        }
+
+        // Righe del giorno già nella DEFAULT: la CREATE fallirebbe. La DEFAULT viene staccata,
+        // le sue righe del giorno passano nella partizione nuova e poi viene riattaccata
+        int moved = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("ALTER TABLE outbox DETACH PARTITION " + DEFAULT_PARTITION);
+            jdbcTemplate.execute("CREATE TABLE " + partition + bounds);
+            int rows = jdbcTemplate.update("INSERT INTO outbox SELECT * FROM " + DEFAULT_PARTITION
+                    + " WHERE created_at >= ? AND created_at < ?", start, end);
+            jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE created_at >= ? AND created_at < ?", start, end);
+            jdbcTemplate.execute("ALTER TABLE outbox ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+            return rows;
+        });
+        log.warn("Created outbox partition {} moving {} rows out of {}", partition, moved, DEFAULT_PARTITION);
+    }
+
+    void dropExpiredPartitions() {
+        LocalDate cutoff = LocalDate.now().minusDays(retention.toDays());
+        List<String> partitions;
+        boolean hasDefault;
+        try {
+            partitions = jdbcTemplate.queryForList(
+                    "SELECT c.relname FROM pg_inherits i "
+                            + "JOIN pg_class c ON c.oid = i.inhrelid "
+                            + "JOIN pg_class p ON p.oid = i.inhparent "
+                            + "WHERE p.relname = 'outbox' AND c.relname LIKE '" + PARTITION_PREFIX + "%' "
+                            + "ORDER BY c.relname",
+                    String.class);
+            hasDefault = exists(DEFAULT_PARTITION);
+        } catch (DataAccessException e) {
+            log.error("Could not list outbox partitions", e);
+            return;
+        }
+
+        for (String partition : partitions) {
+            LocalDate day = parseDay(partition);
+            // La partizione copre [day, day + 1): è scaduta se termina prima della data limite
+            if (day == null || day.plusDays(1).isAfter(cutoff)) {
+                continue;
+            }
+            try {
+                dropPartition(partition, hasDefault);
+            } catch (DataAccessException e) {
+                log.error("Could not drop expired outbox partition {}", partition, e);
+            }
+        }
+    }
+
+    private void dropPartition(String partition, boolean hasDefault) {
+        Boolean pending = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + partition + " WHERE processed = false)", Boolean.class);
+        if (Boolean.TRUE.equals(pending)) {
+            log.warn("Keeping expired outbox partition {}: it still holds unprocessed events", partition);
+            return;
+        }
+
+        if (hasDefault) {
+            // Con una DEFAULT la CONCURRENTLY non è ammessa: il lock esclusivo viene atteso
+            // al più per il lock_timeout, invece di accodare dietro di sé gli INSERT
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = '" + DETACH_LOCK_TIMEOUT + "'");
+                jdbcTemplate.execute("ALTER TABLE outbox DETACH PARTITION " + partition);
+            });
+        } else {
+            // Fuori da una transazione: la CONCURRENTLY non può girare in un blocco transazionale
+            jdbcTemplate.execute("ALTER TABLE outbox DETACH PARTITION " + partition + " CONCURRENTLY");
+        }
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        log.info("Dropped expired outbox partition {}", partition);
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    private boolean defaultHoldsRows(LocalDateTime start, LocalDateTime end) {
+        return exists(DEFAULT_PARTITION) && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE created_at >= ? AND created_at < ?)",
+                Boolean.class, start, end));
+    }
+
+    private LocalDate parseDay(String partition) {
+        try {
+            return LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
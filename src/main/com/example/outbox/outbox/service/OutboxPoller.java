@@ -1,66 +1,217 @@
 package com.example.outbox.outbox.service;
 
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.EventSerializer;
 import com.example.outbox.outbox.model.OutboxEvent;
 import com.example.outbox.outbox.repository.OutboxRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ciclo del relay: legge un lotto dall'outbox, lo pubblica sulle corsie e marca gli eventi confermati.
+ *
+ * Il ciclo non ha una transazione propria: lettura, ogni blocco di ack marcati, errori e
+ * rilascio dei lease usano transazioni brevi e separate. Mentre si attendono gli ack del
+ * broker non si tiene aperta nessuna connessione né alcun lock, e gli eventi confermati
+ * risultano processati per gli altri nodi e per il percorso veloce appena marcati:
+ * un crash a metà ciclo ripubblica solo gli eventi non ancora marcati.
+ */
 @Component
 public class OutboxPoller {
     private static final Logger log = LoggerFactory.getLogger(OutboxPoller.class);
-    private static final int BATCH_SIZE = 100;
+    private static final long ACK_CHECK_INTERVAL_MS = 20;
 
     private final OutboxRepository outboxRepository;
-    private final MessagePublisher messagePublisher;
     private final EventSerializer eventSerializer;
+    private final OutboxLeaseManager leaseManager;
+    private final OutboxLaneDispatcher laneDispatcher;
+    private final OutboxRetryHandler retryHandler;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean clustered;
+    private final Duration ackTimeout;
+    private final int markBatchSize;
+    private final Duration gracePeriod;
+
+    private final Timer pollTimer;
+    private final Timer fetchTimer;
+    private final DistributionSummary fillRatio;
+
+    // Lotto del ciclo precedente andato in timeout con invii ancora in volo (solo thread del relay)
+    private InFlightBatch inFlight;
 
     @Autowired
-    public OutboxPoller(OutboxRepository outboxRepository, MessagePublisher messagePublisher, EventSerializer eventSerializer) {
+    public OutboxPoller(OutboxRepository outboxRepository, EventSerializer eventSerializer, OutboxLeaseManager leaseManager,
+                        OutboxLaneDispatcher laneDispatcher, OutboxRetryHandler retryHandler,
+                        PlatformTransactionManager transactionManager, OutboxProperties properties, MeterRegistry meterRegistry) {
         this.outboxRepository = outboxRepository;
-        this.messagePublisher = messagePublisher;
         this.eventSerializer = eventSerializer;
+        this.leaseManager = leaseManager;
+        this.laneDispatcher = laneDispatcher;
+        this.retryHandler = retryHandler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clustered = properties.getRelay().getMode() == OutboxProperties.RelayMode.CLUSTERED;
+        this.ackTimeout = properties.getRelay().getAckTimeout();
+        this.markBatchSize = properties.getRelay().getMarkBatchSize();
+        // Con la pubblicazione diretta attiva il poller fa da rete di sicurezza:
+        // legge solo le righe che il percorso veloce non ha confermato in tempo
+        this.gracePeriod = properties.getDirectDispatch().isEnabled()
+                ? properties.getDirectDispatch().getGracePeriod()
+                : Duration.ZERO;
+
+        // Durata del ciclo completo (lettura, pubblicazione, marcatura) e della sola lettura
+        this.pollTimer = Timer.builder("outbox.poll.duration").publishPercentileHistogram().register(meterRegistry);
+        this.fetchTimer = Timer.builder("outbox.poll.fetch").register(meterRegistry);
+        // Quota del lotto riempita: vicino a 1 c'è arretrato, vicino a 0 il poller gira a vuoto
+        this.fillRatio = DistributionSummary.builder("outbox.poll.fill.ratio").register(meterRegistry);
     }
 
-    @Scheduled(fixedRate = 5000) // Esegue ogni 5 secondi
-    @Transactional
-    public void pollAndPublish() {
+    /**
+     * Esegue un ciclo di polling e pubblicazione.
+     * La frequenza dei cicli è decisa da {@link OutboxRelayScheduler}.
+     *
+     * @param batchSize Numero massimo di eventi da leggere
+     * @return Il numero di eventi confermati dal broker e marcati come processati nel ciclo:
+     *         con il broker irraggiungibile è 0 anche se il lotto letto era pieno
+     */
+    public int pollAndPublish(int batchSize) {
+        long start = System.nanoTime();
+        try {
+            return doPollAndPublish(batchSize);
+        } finally {
+            pollTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private int doPollAndPublish(int batchSize) {
+        // 0. Finché il lotto precedente ha invii in volo non se ne pubblica un altro:
+        //    le stesse righe verrebbero inviate di nuovo e i loro lease rilasciati troppo presto
+        int settled = 0;
+        if (inFlight != null) {
+            if (!inFlight.dispatch().completion().isDone()) {
+                log.debug("Previous outbox batch still has sends in flight, skipping poll");
+                return 0;
+            }
+            int markedBefore = inFlight.marked().size();
+            finish(inFlight.events(), inFlight.dispatch(), inFlight.marked());
+            settled = inFlight.marked().size() - markedBefore;
+            inFlight = null;
+        }
+
         log.debug("Polling outbox for events...");
 
-        // 1. Recupera eventi non processati
-        List<OutboxEvent> events = outboxRepository.findUnprocessedEvents(BATCH_SIZE);
+        // 1. Recupera eventi non processati (in modalità cluster reclama un lotto in lease)
+        long fetchStart = System.nanoTime();
+        LocalDateTime createdBefore = LocalDateTime.now().minus(gracePeriod);
+        List<OutboxEvent> events = clustered
+                ? leaseManager.claimBatch(createdBefore, batchSize)
+                : outboxRepository.findUnprocessedEvents(LocalDateTime.now(), createdBefore, batchSize);
+        fetchTimer.record(System.nanoTime() - fetchStart, TimeUnit.NANOSECONDS);
+        fillRatio.record((double) events.size() / batchSize);
 
         if (events.isEmpty()) {
-            return;
+            return settled;
         }
 
         log.info("Found {} unprocessed events", events.size());
-        List<UUID> processedEventIds = new ArrayList<>();
-
-        for (OutboxEvent event : events) {
-            try {
-                // 2. Pubblica l'evento
-                messagePublisher.publish(
-                        event.getEventType(),
-                        event.getAggregateType(),
-                        event.getAggregateId(),
-                        event.getPayload()
-                );
-
-                // 3. Aggiunge l'ID alla lista degli eventi processati
-                processedEventIds.add(event.getId());
-
-            } catch (Exception e) {
-                // In caso di errore, l'evento rimarrà non processato
-                // e verrà riprovato nel prossimo ciclo
-                log.error("Failed to process event {}", event.getId(), e);
-
-                // Interrompe il ciclo per evitare di processare eventi in ordine non corretto
-                break;
+
+        // 2. Pubblica gli eventi sulle corsie parallele (una per gruppo di aggregati);
+        //    ogni corsia invia in pipeline, entro la finestra comune di invii in volo
+        OutboxLaneDispatcher.Dispatch dispatch = laneDispatcher.dispatch(events);
+        Set<UUID> marked = new HashSet<>();
+
+        // 3. Marca in batch gli eventi già confermati mentre gli altri sono ancora in volo,
+        //    ogni blocco con il proprio commit
+        long deadline = System.nanoTime() + ackTimeout.toNanos();
+        while (!dispatch.completion().isDone() && System.nanoTime() < deadline
+                && !Thread.currentThread().isInterrupted()) {
+            awaitAcks(dispatch.completion(), ACK_CHECK_INTERVAL_MS);
+            if (dispatch.hasAcked(markBatchSize)) {
+                markProcessed(dispatch.drainAcked(), marked);
+            }
+        }
+
+        // 4. Ack non arrivati entro il timeout: gli eventi confermati finora vengono marcati,
+        //    errori e lease si gestiscono quando anche l'ultimo invio in volo si è concluso
+        if (!dispatch.completion().isDone()) {
+            log.warn("Timed out after {} waiting for broker acks", ackTimeout);
+            // Le corsie smettono di inviare, anche i blocchi ancora in coda
+            dispatch.cancel();
+            markProcessed(dispatch.drainAcked(), marked);
+            inFlight = new InFlightBatch(events, dispatch, marked);
+            return settled + marked.size();
+        }
+        finish(events, dispatch, marked);
+        return settled + marked.size();
+    }
+
+    // Chiude un lotto senza più invii in volo: ultimi ack, errori e lease non confermati
+    private void finish(List<OutboxEvent> events, OutboxLaneDispatcher.Dispatch dispatch, Set<UUID> marked) {
+        markProcessed(dispatch.drainAcked(), marked);
+        log.info("Marked {} events as processed", marked.size());
+
+        // Gli eventi rifiutati vengono rimandati con backoff o, esauriti i tentativi, spostati in dead letter
+        Map<UUID, Throwable> failures = dispatch.failures();
+        if (!failures.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> retryHandler.handleFailures(events, failures));
+        }
+
+        // Rilascia i lease non confermati (compresi gli eventi successivi a uno fallito),
+        // così un altro nodo può riprovare senza attendere la scadenza
+        if (clustered && marked.size() < events.size()) {
+            List<UUID> unacked = events.stream()
+                    .map(OutboxEvent::getId)
+                    .filter(id -> !marked.contains(id) && !failures.containsKey(id))
+                    .toList();
+            if (!unacked.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> leaseManager.release(unacked));
             }
         }
+    }
 
-        // 4. Marca gli eventi come processati in batch
-        if (!processedEventIds.isEmpty()) {
-            outboxRepository.markAsProcessed(processedEventIds, LocalDateTime.now());
-            log.info("Marked {} events as processed", processedEventIds.size());
+    private void awaitAcks(CompletableFuture<Void> completion, long timeoutMillis) {
+        try {
+            completion.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Ancora invii in volo: si torna a marcare gli ack già arrivati
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // I singoli fallimenti sono già stati registrati dalle corsie
         }
     }
+
+    private void markProcessed(List<UUID> ids, Set<UUID> marked) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (clustered) {
+                leaseManager.complete(ids);
+            } else {
+                outboxRepository.markAsProcessed(ids, LocalDateTime.now());
+            }
+        });
+        marked.addAll(ids);
+    }
+
+    private record InFlightBatch(List<OutboxEvent> events, OutboxLaneDispatcher.Dispatch dispatch, Set<UUID> marked) {
+    }
 }
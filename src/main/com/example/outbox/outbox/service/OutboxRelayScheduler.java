@@ -0,0 +1,132 @@
+package com.example.outbox.outbox.service;
+
+import com.example.outbox.config.OutboxProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduler adattivo del relay dell'outbox, al posto del polling a frequenza fissa.
+ *
+ * - Se l'ultimo ciclo ha pubblicato un lotto pieno, il successivo parte subito (c'è arretrato).
+ * - Se nessun evento è stato confermato (outbox vuota, broker irraggiungibile o ack in timeout),
+ *   l'attesa raddoppia a ogni ciclo fino a maxDelay: a riposo il database riceve pochissime
+ *   query e durante un disservizio del broker le stesse righe non vengono rilette di continuo.
+ * - La dimensione del lotto cresce finché un ciclo resta sotto la latenza obiettivo
+ *   e viene dimezzata quando la supera (AIMD).
+ * - Con le notifiche del database attive l'attesa si interrompe appena arriva
+ *   un segnale di inserimento, e il tetto del backoff diventa il polling di riserva.
+ */
+@Component
+public class OutboxRelayScheduler implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelayScheduler.class);
+
+    private final OutboxPoller outboxPoller;
+    private final OutboxWakeupSignal wakeupSignal;
+    private final long minDelayMs;
+    private final long maxDelayMs;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetLatencyNanos;
+
+    private volatile boolean running;
+    private Thread worker;
+    private int batchSize;
+    private long idleDelayMs;
+
+    @Autowired
+    public OutboxRelayScheduler(OutboxPoller outboxPoller, OutboxWakeupSignal wakeupSignal, OutboxProperties properties) {
+        OutboxProperties.Poller poller = properties.getPoller();
+        this.outboxPoller = outboxPoller;
+        this.wakeupSignal = wakeupSignal;
+        this.minDelayMs = poller.getMinDelay().toMillis();
+        this.maxDelayMs = poller.getWakeup() == OutboxProperties.WakeupMode.NOTIFY
+                ? poller.getNotifyFallbackDelay().toMillis()
+                : poller.getMaxDelay().toMillis();
+        this.minBatchSize = poller.getMinBatchSize();
+        this.maxBatchSize = poller.getMaxBatchSize();
+        this.targetLatencyNanos = poller.getTargetLatency().toNanos();
+        this.batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, poller.getBatchSize()));
+        this.idleDelayMs = minDelayMs;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "outbox-relay");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        log.info("Outbox relay started (batch size {}, delay {}-{} ms)", batchSize, minDelayMs, maxDelayMs);
+        while (running) {
+            long delayMs;
+            try {
+                long start = System.nanoTime();
+                int published = outboxPoller.pollAndPublish(batchSize);
+                long elapsed = System.nanoTime() - start;
+
+                delayMs = nextDelay(published);
+                adjustBatchSize(published, elapsed);
+            } catch (Exception e) {
+                log.error("Outbox relay cycle failed", e);
+                delayMs = backOff();
+            }
+
+            if (delayMs > 0) {
+                try {
+                    if (wakeupSignal.await(delayMs)) {
+                        // Nuove righe nell'outbox: il backoff riparte dal minimo
+                        idleDelayMs = minDelayMs;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private long nextDelay(int published) {
+        if (published >= batchSize) {
+            // Lotto pieno: probabilmente c'è altro arretrato, si riparte subito
+            idleDelayMs = minDelayMs;
+            return 0;
+        }
+        if (published > 0) {
+            idleDelayMs = minDelayMs;
+            return minDelayMs;
+        }
+        return backOff();
+    }
+
+    private long backOff() {
+        long delay = idleDelayMs;
+        idleDelayMs = Math.min(maxDelayMs, Math.max(1, idleDelayMs * 2));
+        return delay;
+    }
+
+    private void adjustBatchSize(int published, long elapsedNanos) {
+        if (elapsedNanos > targetLatencyNanos) {
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+        } else if (published >= batchSize) {
+            batchSize = Math.min(maxBatchSize, batchSize + minBatchSize);
+        }
+    }
+}
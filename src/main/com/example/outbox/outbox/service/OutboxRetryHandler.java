@@ -0,0 +1,121 @@
+package com.example.outbox.outbox.service;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.outbox.model.OutboxDeadLetter;
+import com.example.outbox.outbox.model.OutboxEvent;
+import com.example.outbox.outbox.repository.OutboxDeadLetterRepository;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.errors.InvalidTopicException;
+import org.apache.kafka.common.errors.RecordBatchTooLargeException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Gestisce gli eventi che il broker ha rifiutato.
+ *
+ * Ogni fallimento incrementa attempts e rimanda l'evento con un backoff esponenziale
+ * (next_attempt_at); nel frattempo il poller salta l'evento e quelli successivi dello
+ * stesso aggregato, mentre gli altri aggregati continuano a fluire.
+ *
+ * Solo gli errori legati al record stesso (serializzazione, dimensione, topic non valido),
+ * che non si risolvono ripubblicando, portano l'evento in outbox_dead_letter, esauriti
+ * i tentativi. Gli errori del broker (non raggiungibile, timeout) vengono riprovati senza
+ * limite con il backoff massimo: un disservizio non svuota l'outbox nella dead letter,
+ * e alla ripresa gli eventi di ogni aggregato escono ancora nell'ordine originale.
+ */
+@Component
+public class OutboxRetryHandler {
+    private static final Logger log = LoggerFactory.getLogger(OutboxRetryHandler.class);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxDeadLetterRepository deadLetterRepository;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration retryMaxBackoff;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public OutboxRetryHandler(OutboxRepository outboxRepository, OutboxDeadLetterRepository deadLetterRepository,
+                              OutboxProperties properties, MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.maxAttempts = properties.getRelay().getMaxAttempts();
+        this.retryBackoff = properties.getRelay().getRetryBackoff();
+        this.retryMaxBackoff = properties.getRelay().getRetryMaxBackoff();
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Transactional(propagation = Propagation.REQUIRED)
+    public void handleFailures(List<OutboxEvent> events, Map<UUID, Throwable> failures) {
+        if (failures.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (OutboxEvent event : events) {
+            Throwable failure = failures.get(event.getId());
+            if (failure == null) {
+                continue;
+            }
+            int attempts = event.getAttempts() + 1;
+            String error = describe(failure);
+
+            if (attempts >= maxAttempts && !isRetriable(failure)) {
+                deadLetterRepository.save(new OutboxDeadLetter(event, attempts, error));
+                outboxRepository.deleteByIds(List.of(event.getId()));
+                count("outbox.relay.dead.lettered", event);
+                log.error("Outbox event {} moved to dead letter after {} attempts: {}", event.getId(), attempts, error);
+            } else {
+                LocalDateTime nextAttemptAt = now.plus(backoff(attempts));
+                outboxRepository.recordFailure(event.getId(), error, nextAttemptAt);
+                count("outbox.relay.retries", event);
+                log.warn("Outbox event {} failed (attempt {}), retrying at {}: {}", event.getId(), attempts, nextAttemptAt, error);
+            }
+        }
+    }
+
+    // retryBackoff * 2^(attempts-1), limitato a retryMaxBackoff
+    Duration backoff(int attempts) {
+        int shift = Math.min(attempts - 1, 30);
+        Duration delay = retryBackoff.multipliedBy(1L << shift);
+        return delay.compareTo(retryMaxBackoff) > 0 ? retryMaxBackoff : delay;
+    }
+
+    // Un errore è definitivo se nella catena delle cause c'è un problema del record stesso
+    static boolean isRetriable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SerializationException
+                    || cause instanceof RecordTooLargeException
+                    || cause instanceof RecordBatchTooLargeException
+                    || cause instanceof InvalidTopicException
+                    || cause instanceof JsonProcessingException) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void count(String name, OutboxEvent event) {
+        meterRegistry.counter(name, "aggregate.type", event.getAggregateType(), "event.type", event.getEventType()).increment();
+    }
+
+    private static String describe(Throwable failure) {
+        Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+        String error = cause.getClass().getName() + ": " + cause.getMessage();
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
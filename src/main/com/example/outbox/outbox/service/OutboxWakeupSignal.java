@@ -0,0 +1,38 @@
+package com.example.outbox.outbox.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Segnale di risveglio del relay quando arrivano nuove righe nell'outbox.
+ *
+ * I segnali che arrivano mentre il relay è già sveglio vengono accorpati:
+ * 10.000 inserimenti consecutivi producono un solo risveglio, dopo il quale
+ * il relay svuota la tabella a lotti pieni.
+ */
+@Component
+public class OutboxWakeupSignal {
+
+    private final Semaphore permit = new Semaphore(0);
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    public void signal() {
+        if (pending.compareAndSet(false, true)) {
+            permit.release();
+        }
+    }
+
+    /**
+     * Attende un segnale per al massimo il tempo indicato.
+     *
+     * @return true se è arrivato un segnale, false allo scadere del timeout
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        boolean signalled = permit.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        pending.set(false);
+        return signalled;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.outbox.service;
+
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.domain.model.Order;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit per la creazione concorrente degli ordini.
+ *
+ * Le richieste che arrivano entro una breve finestra (o fino a un numero massimo)
+ * vengono raccolte e salvate in un'unica transazione con INSERT in batch, tramite
+ * {@link OrderService#createOrders}. Ogni chiamante riceve il proprio ordine dopo
+ * il commit condiviso: qualche millisecondo di latenza in più in cambio di molti
+ * meno commit (e fsync) sul database.
+ *
+ * Se la transazione condivisa fallisce, gli ordini del gruppo vengono ripresi uno
+ * per uno, così un ordine non valido non fa fallire quelli degli altri chiamanti.
+ * Con il group commit disabilitato ogni richiesta usa direttamente {@link OrderService#createOrder}.
+ *
+ * La coda è limitata: quando è piena i chiamanti attendono al più enqueueTimeout e poi
+ * vengono rifiutati. Allo spegnimento il worker termina il gruppo in corso e salva le
+ * richieste rimaste in coda; quelle arrivate dopo l'ultimo svuotamento vengono rifiutate.
+ */
+@Component
+public class OrderGroupCommitter implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(OrderGroupCommitter.class);
+    // Attesa di nuove richieste tra due controlli dello spegnimento
+    private static final long IDLE_POLL_MS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final OrderService orderService;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final long enqueueTimeoutNanos;
+    private final BlockingQueue<PendingOrder> queue;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    public OrderGroupCommitter(OrderService orderService, OutboxProperties properties) {
+        this.orderService = orderService;
+        this.enabled = properties.getGroupCommit().isEnabled();
+        this.windowNanos = properties.getGroupCommit().getWindow().toNanos();
+        this.maxBatchSize = properties.getGroupCommit().getMaxBatchSize();
+        this.enqueueTimeoutNanos = properties.getGroupCommit().getEnqueueTimeout().toNanos();
+        this.queue = new ArrayBlockingQueue<>(properties.getGroupCommit().getQueueCapacity());
+    }
+
+    /**
+     * @return Un future completato con l'ordine salvato dopo il commit del gruppo
+     */
+    public CompletableFuture<Order> submit(Order order) {
+        if (!enabled || !running) {
+            return CompletableFuture.completedFuture(orderService.createOrder(order));
+        }
+        PendingOrder pending = new PendingOrder(order);
+        try {
+            if (!queue.offer(pending, enqueueTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Order group commit queue is full"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Interrupted while waiting for the group commit queue", e));
+        }
+        // Spegnimento iniziato durante l'inserimento: se il worker non ha già preso la richiesta
+        // con l'ultimo svuotamento della coda, nessuno la salverebbe più
+        if (!running && queue.remove(pending)) {
+            pending.result.completeExceptionally(new RejectedExecutionException("Order group commit is shutting down"));
+        }
+        return pending.result;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "order-group-commit");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Il worker non viene interrotto: una transazione in corso arriva fino al commit
+    @Override
+    public void stop() {
+        running = false;
+        if (worker == null) {
+            return;
+        }
+        try {
+            worker.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            log.warn("Order group commit did not finish within {} ms", SHUTDOWN_TIMEOUT_MS);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        log.info("Order group commit started (window {} µs, max batch {})", windowNanos / 1000, maxBatchSize);
+        while (running) {
+            List<PendingOrder> group;
+            try {
+                group = collectGroup();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (!group.isEmpty()) {
+                commit(group);
+            }
+        }
+
+        // Le richieste rimaste in coda vengono comunque salvate prima dello spegnimento
+        List<PendingOrder> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            commit(remaining);
+        }
+    }
+
+    // La finestra parte dalla prima richiesta del gruppo; senza richieste il gruppo è vuoto
+    private List<PendingOrder> collectGroup() throws InterruptedException {
+        List<PendingOrder> group = new ArrayList<>(maxBatchSize);
+        PendingOrder first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return group;
+        }
+        group.add(first);
+
+        long deadline = System.nanoTime() + windowNanos;
+        while (group.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+            queue.drainTo(group, maxBatchSize - group.size());
+        }
+        return group;
+    }
+
+    private void commit(List<PendingOrder> group) {
+        try {
+            List<Order> saved = orderService.createOrders(group.stream().map(p -> p.order).toList());
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).result.complete(saved.get(i));
+            }
+            log.debug("Group committed {} orders", group.size());
+        } catch (Exception e) {
+            log.warn("Group commit of {} orders failed, retrying them individually", group.size(), e);
+            for (PendingOrder pending : group) {
+                try {
+                    // La transazione annullata ha lasciato sugli oggetti gli ID presi dalla sequenza
+                    pending.order.setId(null);
+                    pending.order.getItems().forEach(item -> item.setId(null));
+                    pending.result.complete(orderService.createOrder(pending.order));
+                } catch (Exception individual) {
+                    pending.result.completeExceptionally(individual);
+                }
+            }
+        }
+    }
+
+    private static final class PendingOrder {
+        private final Order order;
+        private final CompletableFuture<Order> result = new CompletableFuture<>();
+
+        PendingOrder(Order order) {
+            this.order = order;
+        }
+    }
+}
@@ -1,38 +1,128 @@
 package com.example.outbox.service;
 
+import com.example.outbox.claimcheck.ClaimCheck;
 import com.example.outbox.domain.event.OrderCreatedEvent;
 import com.example.outbox.domain.model.Order;
 import com.example.outbox.domain.repository.OrderRepository;
 import com.example.outbox.messagging.EventSerializer;
 import com.example.outbox.outbox.model.OutboxEvent;
 import com.example.outbox.outbox.repository.OutboxRepository;
+import com.example.outbox.outbox.service.OutboxDirectDispatcher;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OrderService {
+    // Ordini scritti prima di svuotare il contesto di persistenza (multiplo di hibernate.jdbc.batch_size)
+    private static final int IMPORT_FLUSH_SIZE = 500;
+
     private final OrderRepository orderRepository;
     private final OutboxRepository outboxRepository;
     private final EventSerializer eventSerializer;
+    private final OutboxDirectDispatcher directDispatcher;
+    private final EntityManager entityManager;
+    private final ClaimCheck claimCheck;
 
     @Autowired
-    public OrderService(OrderRepository orderRepository, OutboxRepository outboxRepository, EventSerializer eventSerializer) {
+    public OrderService(OrderRepository orderRepository, OutboxRepository outboxRepository, EventSerializer eventSerializer,
+                        OutboxDirectDispatcher directDispatcher, EntityManager entityManager, ClaimCheck claimCheck) {
         this.orderRepository = orderRepository;
         this.outboxRepository = outboxRepository;
         this.eventSerializer = eventSerializer;
+        this.directDispatcher = directDispatcher;
+        this.entityManager = entityManager;
+        this.claimCheck = claimCheck;
     }
 
     @Transactional
     public Order createOrder(Order order) {
-        // 1. Salva l'ordine nel database
+        // 1. Salva l'ordine nel database, con le righe collegate (il JSON in ingresso non porta il riferimento)
+        order.getItems().forEach(item -> item.setOrder(order));
         Order savedOrder = orderRepository.save(order);
 
-        // 2. Crea l'evento di dominio
-        List<OrderCreatedEvent.OrderItemDto> itemDtos = order.getItems().stream()
+        // 2. Crea l'evento di dominio e lo salva nella tabella outbox (nella stessa transazione)
+        OutboxEvent outboxEvent = toOutboxEvent(savedOrder);
+        outboxRepository.save(outboxEvent);
+
+        // 3. Se abilitato, pubblica l'evento subito dopo il commit (il poller resta come rete di sicurezza)
+        directDispatcher.dispatchAfterCommit(outboxEvent);
+
+        return savedOrder;
+    }
+
+    /**
+     * Crea più ordini in un'unica transazione, con INSERT raggruppati in batch JDBC
+     * per ordini, righe ed eventi dell'outbox.
+     */
+    @Transactional
+    public List<Order> createOrders(List<Order> orders) {
+        List<Order> savedOrders = new ArrayList<>(orders.size());
+        List<OutboxEvent> outboxEvents = new ArrayList<>(orders.size());
+
+        for (int from = 0; from < orders.size(); from += IMPORT_FLUSH_SIZE) {
+            List<Order> chunk = orders.subList(from, Math.min(from + IMPORT_FLUSH_SIZE, orders.size()));
+            for (Order order : chunk) {
+                order.getItems().forEach(item -> item.setOrder(order));
+            }
+
+            // Gli ID arrivano dalla sequenza: nessun INSERT viene eseguito prima del flush
+            List<Order> savedChunk = orderRepository.saveAll(chunk);
+            List<OutboxEvent> chunkEvents = savedChunk.stream().map(this::toOutboxEvent).toList();
+            outboxRepository.saveAll(chunkEvents);
+
+            // Il flush invia gli INSERT ordinati per entità, a gruppi di batch_size;
+            // il clear evita che il contesto di persistenza cresca con l'import
+            entityManager.flush();
+            entityManager.clear();
+
+            savedOrders.addAll(savedChunk);
+            outboxEvents.addAll(chunkEvents);
+        }
+
+        outboxEvents.forEach(directDispatcher::dispatchAfterCommit);
+        return savedOrders;
+    }
+
+    /**
+     * Pagina di ordini in ordine di ID, a partire dal primo ID successivo a afterId
+     * (paginazione keyset: il costo non dipende da quante pagine precedono).
+     * Le righe vengono caricate con una sola query per l'intera pagina.
+     */
+    @Transactional(readOnly = true)
+    public List<Order> findOrdersAfter(long afterId, int limit) {
+        List<Long> ids = orderRepository.findIdsAfter(afterId, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return orderRepository.findWithItemsByIdIn(ids);
+    }
+
+    /**
+     * Passa tutti gli ordini, con le righe, al consumer uno alla volta in ordine di ID.
+     * Ogni ordine viene staccato dal contesto di persistenza dopo l'uso: la memoria
+     * resta costante qualunque sia il numero di ordini esportati.
+     */
+    @Transactional(readOnly = true)
+    public void exportOrders(Consumer<Order> consumer) {
+        try (Stream<Order> orders = orderRepository.streamAllWithItems()) {
+            orders.forEach(order -> {
+                consumer.accept(order);
+                entityManager.detach(order);
+            });
+        }
+    }
+
+    private OutboxEvent toOutboxEvent(Order savedOrder) {
+        // Crea l'evento di dominio
+        List<OrderCreatedEvent.OrderItemDto> itemDtos = savedOrder.getItems().stream()
                 .map(item -> new OrderCreatedEvent.OrderItemDto(
                         item.getProductName(),
                         item.getQuantity(),
@@ -46,20 +136,26 @@ public class OrderService {
                 itemDtos
         );
 
-        // 3. Serializza l'evento
+        // Serializza l'evento
         String payload = eventSerializer.serialize(event);
 
-        // 4. Salva l'evento nella tabella outbox (nella stessa transazione)
-        OutboxEvent outboxEvent = new OutboxEvent(
+        // I payload troppo grandi vanno nel blob store: nell'outbox resta solo il riferimento
+        String payloadRef = claimCheck.offload(payload);
+        if (payloadRef != null) {
+            return OutboxEvent.withPayloadRef(
+                    "com.example.outbox.domain.model.Order",
+                    savedOrder.getId().toString(),
+                    "OrderCreated",
+                    payloadRef
+            );
+        }
+
+        return new OutboxEvent(
                 "com.example.outbox.domain.model.Order",
                 savedOrder.getId().toString(),
                 "OrderCreated",
                 payload
         );
-
-        outboxRepository.save(outboxEvent);
-
-        return savedOrder;
     }
 
     // Altri metodi per la gestione degli ordini...
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
 
@@ -125,22 +126,12 @@ public class JsonUtils {
             JsonNode node1 = objectMapper.readTree(json1);
             JsonNode node2 = objectMapper.readTree(json2);
 
-            // Crea una deep copy di node1
-            JsonNode merged = objectMapper.readTree(objectMapper.writeValueAsString(node1));
-
-            // Applica node2 sopra merged
-            if (merged.isObject() && node2.isObject()) {
-                ObjectMapper mapper = new ObjectMapper();
-                Object mergedObj = mapper.treeToValue(merged, Object.class);
-                Object node2Obj = mapper.treeToValue(node2, Object.class);
-
-                // Esegue la fusione a livello di Java Object
-                // (questo è un approccio semplificato, in produzione potrebbe
-                // essere necessario un algoritmo di merge più sofisticato)
-                if (mergedObj instanceof java.util.Map && node2Obj instanceof java.util.Map) {
-                    ((java.util.Map) mergedObj).putAll((java.util.Map) node2Obj);
-                    return objectMapper.writeValueAsString(mergedObj);
-                }
+            // Applica node2 sopra node1 direttamente sull'albero appena letto
+            // (è già una copia privata, non serve ricopiarlo né passare da Map).
+            // Come prima, la fusione è solo sulle proprietà di primo livello.
+            if (node1.isObject() && node2.isObject()) {
+                ((ObjectNode) node1).setAll((ObjectNode) node2);
+                return objectMapper.writeValueAsString(node1);
             }
 
             // Fallback: restituisce solo il secondo JSON
@@ -0,0 +1,8 @@
+package com.example.outbox.util.compression;
+
+// Codifica del payload salvato nell'outbox
+public enum CompressionAlgorithm {
+    NONE,
+    LZ4,
+    ZSTD
+}
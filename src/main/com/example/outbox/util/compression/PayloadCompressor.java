@@ -0,0 +1,73 @@
+package com.example.outbox.util.compression;
+
+import com.github.luben.zstd.Zstd;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Comprime i payload JSON che superano una soglia di dimensione.
+ *
+ * I payload piccoli restano in chiaro: sotto la soglia la compressione
+ * costa CPU senza ridurre in modo apprezzabile le righe.
+ * La decompressione dipende solo dall'algoritmo salvato con la riga,
+ * non dalla configurazione corrente.
+ */
+public class PayloadCompressor {
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+    private static final int ZSTD_LEVEL = 3;
+
+    private final CompressionAlgorithm algorithm;
+    private final int threshold;
+
+    public PayloadCompressor(CompressionAlgorithm algorithm, int threshold) {
+        this.algorithm = algorithm;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return L'algoritmo da usare per un payload di questa dimensione (NONE se sotto soglia)
+     */
+    public CompressionAlgorithm algorithmFor(byte[] payload) {
+        return payload.length < threshold ? CompressionAlgorithm.NONE : algorithm;
+    }
+
+    public static byte[] compress(byte[] payload, CompressionAlgorithm algorithm) {
+        return switch (algorithm) {
+            case NONE -> payload;
+            case LZ4 -> compressLz4(payload);
+            case ZSTD -> Zstd.compress(payload, ZSTD_LEVEL);
+        };
+    }
+
+    public static String decompress(byte[] compressed, CompressionAlgorithm algorithm) {
+        byte[] payload = switch (algorithm) {
+            case NONE -> compressed;
+            case LZ4 -> decompressLz4(compressed);
+            case ZSTD -> Zstd.decompress(compressed, (int) Zstd.getFrameContentSize(compressed));
+        };
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    // Il formato a blocchi di LZ4 non registra la lunghezza originale: la si antepone in 4 byte
+    private static byte[] compressLz4(byte[] payload) {
+        LZ4Compressor compressor = LZ4.fastCompressor();
+        ByteBuffer out = ByteBuffer.allocate(4 + compressor.maxCompressedLength(payload.length));
+        out.putInt(payload.length);
+        int length = compressor.compress(payload, 0, payload.length, out.array(), 4);
+        byte[] result = new byte[4 + length];
+        System.arraycopy(out.array(), 0, result, 0, result.length);
+        return result;
+    }
+
+    private static byte[] decompressLz4(byte[] compressed) {
+        int originalLength = ByteBuffer.wrap(compressed).getInt();
+        LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+        byte[] payload = new byte[originalLength];
+        decompressor.decompress(compressed, 4, payload, 0, originalLength);
+        return payload;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.outbox.util.compression;
+
+/**
+ * Punto di accesso statico alla compressione configurata, per le entità JPA.
+ */
+public final class PayloadCompressors {
+
+    private static volatile PayloadCompressor current = new PayloadCompressor(CompressionAlgorithm.NONE, Integer.MAX_VALUE);
+
+    private PayloadCompressors() {
+    }
+
+    public static PayloadCompressor get() {
+        return current;
+    }
+
+    public static void use(PayloadCompressor compressor) {
+        current = compressor;
+    }
+}
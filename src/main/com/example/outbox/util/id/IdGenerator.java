@@ -0,0 +1,8 @@
+package com.example.outbox.util.id;
+
+import java.util.UUID;
+
+// Interfaccia per i generatori di identificativi di eventi e messaggi
+public interface IdGenerator {
+    UUID nextId();
+}
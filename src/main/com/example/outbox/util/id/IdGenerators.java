@@ -0,0 +1,23 @@
+package com.example.outbox.util.id;
+
+import java.util.UUID;
+
+/**
+ * Punto di accesso statico al generatore di ID configurato.
+ * Serve alle classi non gestite da Spring, come le entità JPA e gli eventi di dominio.
+ */
+public final class IdGenerators {
+
+    private static volatile IdGenerator current = new UuidV7Generator();
+
+    private IdGenerators() {
+    }
+
+    public static UUID nextId() {
+        return current.nextId();
+    }
+
+    public static void use(IdGenerator generator) {
+        current = generator;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.outbox.util.id;
+
+import java.util.UUID;
+
+// Generatore di UUID casuali (versione 4), il comportamento storico
+public class RandomUuidGenerator implements IdGenerator {
+
+    @Override
+    public UUID nextId() {
+        return UUID.randomUUID();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.outbox.util.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generatore di UUID versione 7 (RFC 9562) ordinati nel tempo.
+ *
+ * I primi 48 bit contengono il timestamp in millisecondi, seguiti da un contatore
+ * di 12 bit (rand_a) che rende gli ID monotoni anche all'interno dello stesso
+ * millisecondo. Gli inserimenti finiscono così sempre in coda all'indice B-tree
+ * invece di sparpagliarsi su tutte le pagine come con gli UUID casuali.
+ *
+ * Lo stato (timestamp + contatore) è un unico long aggiornato con CAS:
+ * niente lock e nessuna allocazione oltre all'oggetto UUID restituito.
+ */
+public class UuidV7Generator implements IdGenerator {
+    private static final int COUNTER_BITS = 12;
+    private static final long COUNTER_SEED_MASK = (1L << (COUNTER_BITS - 1)) - 1;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final long VERSION_7 = 0x7L << 12;
+    private static final long VARIANT_MASK = 0x3FFFFFFFFFFFFFFFL;
+    private static final long VARIANT_RFC = 0x8000000000000000L;
+
+    // timestamp (48 bit) << 12 | contatore (12 bit)
+    private final AtomicLong state = new AtomicLong();
+
+    @Override
+    public UUID nextId() {
+        long now = System.currentTimeMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long next;
+        while (true) {
+            long previous = state.get();
+            if (now > (previous >>> COUNTER_BITS)) {
+                // Nuovo millisecondo: contatore inizializzato a caso, con il bit alto a zero
+                // per lasciare spazio agli incrementi successivi
+                next = (now << COUNTER_BITS) | (random.nextLong() & COUNTER_SEED_MASK);
+            } else {
+                // Stesso millisecondo (o orologio tornato indietro): incrementa il contatore.
+                // In caso di overflow il riporto avanza il timestamp e l'ordine resta monotono.
+                next = previous + 1;
+            }
+            if (state.compareAndSet(previous, next)) {
+                break;
+            }
+        }
+
+        long timestamp = next >>> COUNTER_BITS;
+        long counter = next & COUNTER_MASK;
+        long mostSigBits = (timestamp << 16) | VERSION_7 | counter;
+        long leastSigBits = (random.nextLong() & VARIANT_MASK) | VARIANT_RFC;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,49 @@
+-- Variante partizionata della tabella outbox (outbox.storage.mode=PARTITIONED, solo PostgreSQL).
+-- La tabella è partizionata per intervalli giornalieri di created_at: le partizioni future
+-- vengono create da OutboxPartitionManager e quelle scadute, con tutte le righe processate,
+-- vengono staccate ed eliminate invece di cancellare le righe una per una.
+CREATE TABLE outbox (
+                        id UUID NOT NULL,
+                        aggregate_type VARCHAR(255) NOT NULL,
+                        aggregate_id VARCHAR(255) NOT NULL,
+                        event_type VARCHAR(255) NOT NULL,
+                        payload JSONB,
+                        payload_compressed BYTEA,
+                        payload_encoding VARCHAR(16) NOT NULL DEFAULT 'NONE',
+                        payload_ref VARCHAR(128),
+                        created_at TIMESTAMP NOT NULL,
+                        processed BOOLEAN NOT NULL DEFAULT FALSE,
+                        processed_at TIMESTAMP,
+                        locked_by VARCHAR(255),
+                        lease_until TIMESTAMP,
+                        attempts INT NOT NULL DEFAULT 0,
+                        next_attempt_at TIMESTAMP,
+                        last_error VARCHAR(1000),
+
+    -- La chiave di partizionamento deve far parte della chiave primaria
+                        PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Indici definiti sulla tabella padre: vengono creati automaticamente su ogni partizione
+CREATE INDEX idx_outbox_processed_created ON outbox (processed, created_at);
+CREATE INDEX idx_outbox_aggregate ON outbox (aggregate_type, aggregate_id);
+
+-- Nessuna partizione DEFAULT: le partizioni dei prossimi giorni (outbox.storage.premake-days)
+-- vengono create in anticipo, e senza DEFAULT quelle scadute si staccano con DETACH CONCURRENTLY.
+-- Con una DEFAULT aggiunta a mano OutboxPartitionManager sposta le righe del giorno nella
+-- partizione nuova e stacca quelle scadute senza CONCURRENTLY:
+-- CREATE TABLE outbox_default PARTITION OF outbox DEFAULT;
+
+-- Notifica di inserimento per il relay (outbox.poller.wakeup=NOTIFY), come in outbox.sql.
+-- Un trigger di statement sulla tabella padre scatta per gli INSERT su outbox, qualunque sia la partizione.
+CREATE OR REPLACE FUNCTION outbox_notify() RETURNS trigger AS $$
+BEGIN
+    -- Canale ascoltato da OutboxNotificationListener.CHANNEL
+    PERFORM pg_notify('outbox_insert', '');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER outbox_insert_notify
+    AFTER INSERT ON outbox
+    FOR EACH STATEMENT EXECUTE FUNCTION outbox_notify();
@@ -3,12 +3,66 @@ CREATE TABLE outbox (
                         aggregate_type VARCHAR(255) NOT NULL,
                         aggregate_id VARCHAR(255) NOT NULL,
                         event_type VARCHAR(255) NOT NULL,
-                        payload JSONB NOT NULL,
+                        payload JSONB,
+                        payload_compressed BYTEA,
+                        payload_encoding VARCHAR(16) NOT NULL DEFAULT 'NONE',
+                        payload_ref VARCHAR(128),
                         created_at TIMESTAMP NOT NULL,
                         processed BOOLEAN NOT NULL DEFAULT FALSE,
                         processed_at TIMESTAMP,
+                        locked_by VARCHAR(255),
+                        lease_until TIMESTAMP,
+                        attempts INT NOT NULL DEFAULT 0,
+                        next_attempt_at TIMESTAMP,
+                        last_error VARCHAR(1000),
+
+    -- Payload in chiaro, compresso (LZ4/ZSTD) sopra outbox.compression.threshold
+    -- oppure, sopra outbox.claim-check.threshold, solo il riferimento al blob store
+                        CHECK (payload IS NOT NULL OR payload_compressed IS NOT NULL OR payload_ref IS NOT NULL),
 
     -- Indici per migliorare le performance
                         INDEX idx_outbox_processed_created (processed, created_at),
                         INDEX idx_outbox_aggregate (aggregate_type, aggregate_id)
-);
\ No newline at end of file
+);
+
+-- In alternativa, o in aggiunta, su PostgreSQL 14+ la compressione TOAST dei JSONB grandi può usare LZ4:
+-- ALTER TABLE outbox ALTER COLUMN payload SET COMPRESSION lz4;
+
+-- Eventi che hanno esaurito i tentativi di pubblicazione, con il motivo dell'ultimo errore
+CREATE TABLE outbox_dead_letter (
+                        id UUID PRIMARY KEY,
+                        aggregate_type VARCHAR(255) NOT NULL,
+                        aggregate_id VARCHAR(255) NOT NULL,
+                        event_type VARCHAR(255) NOT NULL,
+                        payload JSONB,
+                        payload_ref VARCHAR(128),
+                        created_at TIMESTAMP NOT NULL,
+                        attempts INT NOT NULL,
+                        last_error VARCHAR(1000),
+                        failed_at TIMESTAMP NOT NULL,
+
+                        INDEX idx_outbox_dead_letter_aggregate (aggregate_type, aggregate_id)
+);
+
+-- Messaggi già elaborati dal consumer, per scartare i duplicati consegnati dal relay
+CREATE TABLE processed_messages (
+                        message_id VARCHAR(64) PRIMARY KEY,
+                        processed_at TIMESTAMP NOT NULL,
+
+                        INDEX idx_processed_messages_processed_at (processed_at)
+);
+
+-- Notifica di inserimento per il relay (outbox.poller.wakeup=NOTIFY).
+-- Trigger a livello di statement: un INSERT di molte righe produce una sola notifica,
+-- e PostgreSQL accorpa le notifiche identiche inviate nella stessa transazione.
+CREATE OR REPLACE FUNCTION outbox_notify() RETURNS trigger AS $$
+BEGIN
+    -- Canale ascoltato da OutboxNotificationListener.CHANNEL
+    PERFORM pg_notify('outbox_insert', '');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER outbox_insert_notify
+    AFTER INSERT ON outbox
+    FOR EACH STATEMENT EXECUTE FUNCTION outbox_notify();
@@ -0,0 +1,95 @@
+import com.example.outbox.claimcheck.BlobStore;
+import com.example.outbox.claimcheck.ClaimCheck;
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.outbox.repository.OutboxDeadLetterRepository;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ClaimCheckTest {
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private OutboxDeadLetterRepository deadLetterRepository;
+
+    private OutboxProperties properties;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new OutboxProperties();
+        properties.getClaimCheck().setEnabled(true);
+        properties.getClaimCheck().setThreshold(16);
+        properties.getClaimCheck().setRetention(Duration.ofDays(14));
+    }
+
+    private ClaimCheck claimCheck() {
+        return new ClaimCheck(blobStore, outboxRepository, deadLetterRepository, properties);
+    }
+
+    @Test
+    public void offload_shouldKeepSmallPayloadsInline() throws Exception {
+        assertNull(claimCheck().offload("{}"));
+        verify(blobStore, never()).put(any());
+    }
+
+    @Test
+    public void offload_shouldStoreLargePayloadsAndReturnTheReference() throws Exception {
+        String payload = "{\"customerName\":\"Test Customer\"}";
+        when(blobStore.put(payload.getBytes(StandardCharsets.UTF_8))).thenReturn("sha256:abc");
+
+        assertEquals("sha256:abc", claimCheck().offload(payload));
+    }
+
+    @Test
+    public void offload_shouldDoNothingWhenDisabled() throws Exception {
+        properties.getClaimCheck().setEnabled(false);
+
+        assertNull(claimCheck().offload("{\"customerName\":\"Test Customer\"}"));
+        verify(blobStore, never()).put(any());
+    }
+
+    @Test
+    public void resolve_shouldReadEachReferenceFromTheStoreOnlyOnce() throws Exception {
+        byte[] content = "{\"orderId\":1}".getBytes(StandardCharsets.UTF_8);
+        when(blobStore.get("sha256:abc")).thenReturn(content);
+        ClaimCheck claimCheck = claimCheck();
+
+        assertArrayEquals(content, claimCheck.resolve("sha256:abc"));
+        assertArrayEquals(content, claimCheck.resolve("sha256:abc"));
+
+        verify(blobStore, times(1)).get("sha256:abc");
+    }
+
+    @Test
+    public void purgeExpired_shouldExcludeBlobsReferencedByOutboxAndDeadLetter() throws Exception {
+        when(outboxRepository.findUnprocessedPayloadRefs()).thenReturn(List.of("sha256:pending"));
+        when(deadLetterRepository.findPayloadRefs()).thenReturn(List.of("sha256:dead"));
+
+        claimCheck().purgeExpired();
+
+        verify(blobStore).purgeOlderThan(Duration.ofDays(14), Set.of("sha256:pending", "sha256:dead"));
+    }
+}
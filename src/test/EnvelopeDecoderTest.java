@@ -0,0 +1,90 @@
+import com.example.outbox.claimcheck.ClaimCheck;
+import com.example.outbox.messagging.DecodedEvent;
+import com.example.outbox.messagging.EnvelopeDecoder;
+import com.example.outbox.messagging.EventHandlerRegistry;
+import com.example.outbox.messagging.EventSerializer;
+import com.example.outbox.messagging.LocalSchemaRegistry;
+import com.example.outbox.messagging.OutboxHeaders;
+import com.example.outbox.messagging.PayloadCodec;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class EnvelopeDecoderTest {
+
+    private static final byte[] BLOB = "{\"orderId\":7}".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private ClaimCheck claimCheck;
+
+    private EnvelopeDecoder decoder;
+    private EventHandlerRegistry handlers;
+
+    @BeforeEach
+    public void setUp() {
+        EventSerializer serializer = new EventSerializer();
+        decoder = new EnvelopeDecoder(serializer, new PayloadCodec(), new LocalSchemaRegistry(), claimCheck);
+        handlers = new EventHandlerRegistry(serializer).register("OrderCreated", Map.class, event -> { });
+    }
+
+    private static ConsumerRecord<String, byte[]> record(byte[] value) {
+        return new ConsumerRecord<>("orders", 0, 0L, "7", value);
+    }
+
+    private static void header(ConsumerRecord<String, byte[]> record, String name, String value) {
+        record.headers().add(name, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void decode_shouldResolvePayloadRefFromTheEnvelope() throws Exception {
+        when(claimCheck.resolve("sha256:abc")).thenReturn(BLOB);
+        byte[] envelope = ("{\"messageId\":\"m-1\",\"eventType\":\"OrderCreated\",\"aggregateType\":\"Order\"," +
+                "\"aggregateId\":\"7\",\"payloadRef\":\"sha256:abc\"}").getBytes(StandardCharsets.UTF_8);
+
+        DecodedEvent decoded = decoder.decode(record(envelope), handlers);
+
+        assertEquals("m-1", decoded.getMessageId());
+        assertEquals(Map.of("orderId", 7), decoded.getEvent());
+    }
+
+    @Test
+    public void decode_shouldResolvePayloadRefFromTheHeaders() throws Exception {
+        when(claimCheck.resolve("sha256:abc")).thenReturn(BLOB);
+        ConsumerRecord<String, byte[]> record = record(new byte[0]);
+        header(record, OutboxHeaders.MESSAGE_ID, "m-1");
+        header(record, OutboxHeaders.EVENT_TYPE, "OrderCreated");
+        header(record, OutboxHeaders.PAYLOAD_REF, "sha256:abc");
+
+        DecodedEvent decoded = decoder.decode(record, handlers);
+
+        assertEquals(Map.of("orderId", 7), decoded.getEvent());
+    }
+
+    @Test
+    public void decode_shouldNotReadTheBlobUntilTheEventIsRequested() throws Exception {
+        ConsumerRecord<String, byte[]> record = record(new byte[0]);
+        header(record, OutboxHeaders.MESSAGE_ID, "m-1");
+        header(record, OutboxHeaders.EVENT_TYPE, "OrderCreated");
+        header(record, OutboxHeaders.PAYLOAD_REF, "sha256:abc");
+
+        DecodedEvent decoded = decoder.decode(record, handlers);
+
+        // Un duplicato scartato dal consumer non scarica mai il payload
+        assertTrue(decoded.isKnown());
+        verify(claimCheck, never()).resolve(anyString());
+    }
+}
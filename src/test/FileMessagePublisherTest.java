@@ -0,0 +1,50 @@
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.EventSerializer;
+import com.example.outbox.messagging.FileMessagePublisher;
+import com.example.outbox.messagging.OutboundMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileMessagePublisherTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void publishBatch_shouldAppendOneLinePerMessageAndAckEach() throws Exception {
+        OutboxProperties properties = new OutboxProperties();
+        Path file = directory.resolve("messages.jsonl");
+        properties.getMessaging().setFile(file.toString());
+        EventSerializer serializer = new EventSerializer();
+        FileMessagePublisher publisher = new FileMessagePublisher(serializer, properties);
+
+        List<CompletableFuture<Void>> results = publisher.publishBatch(List.of(
+                new OutboundMessage("m-1", "OrderCreated", "Order", "1", "{\"orderId\":1}", null, 1000L),
+                new OutboundMessage("m-2", "OrderCreated", "Order", "2", "{\"orderId\":2}", null, 2000L)));
+        publisher.publish(new OutboundMessage("m-3", "OrderCreated", "Order", "3", null, "sha256-abc", 3000L)).join();
+        publisher.close();
+
+        assertEquals(2, results.size());
+        results.forEach(result -> assertTrue(result.isDone() && !result.isCompletedExceptionally()));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        JsonNode first = serializer.readTree(lines.get(0));
+        assertEquals("m-1", first.get("messageId").asText());
+        // Il payload è incluso come JSON, non come stringa
+        assertEquals(1, first.get("payload").get("orderId").asInt());
+        JsonNode claimCheck = serializer.readTree(lines.get(2));
+        assertEquals("sha256-abc", claimCheck.get("payloadRef").asText());
+        assertFalse(claimCheck.has("payload"));
+    }
+}
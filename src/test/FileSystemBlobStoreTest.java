@@ -0,0 +1,76 @@
+import com.example.outbox.claimcheck.FileSystemBlobStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileSystemBlobStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Path pathOf(String reference) {
+        String hash = reference.substring("sha256:".length());
+        return directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private void age(String reference, Duration age) throws Exception {
+        Files.setLastModifiedTime(pathOf(reference), FileTime.from(Instant.now().minus(age)));
+    }
+
+    @Test
+    public void put_shouldReturnTheSameReferenceForTheSameContent() throws Exception {
+        FileSystemBlobStore store = new FileSystemBlobStore(directory);
+
+        String first = store.put(bytes("{\"orderId\":1}"));
+        String second = store.put(bytes("{\"orderId\":1}"));
+
+        assertEquals(first, second);
+        assertTrue(first.startsWith("sha256:"));
+        assertArrayEquals(bytes("{\"orderId\":1}"), store.get(first));
+    }
+
+    @Test
+    public void put_shouldRefreshTheModificationTimeOfAReusedBlob() throws Exception {
+        FileSystemBlobStore store = new FileSystemBlobStore(directory);
+        String reference = store.put(bytes("{\"orderId\":1}"));
+        age(reference, Duration.ofDays(20));
+
+        // Un nuovo evento cita lo stesso contenuto: il blob non deve più risultare scaduto
+        store.put(bytes("{\"orderId\":1}"));
+
+        assertEquals(0, store.purgeOlderThan(Duration.ofDays(14), Set.of()));
+        assertTrue(Files.exists(pathOf(reference)));
+    }
+
+    @Test
+    public void purgeOlderThan_shouldKeepRecentAndReferencedBlobs() throws Exception {
+        FileSystemBlobStore store = new FileSystemBlobStore(directory);
+        String expired = store.put(bytes("{\"orderId\":1}"));
+        String referenced = store.put(bytes("{\"orderId\":2}"));
+        String recent = store.put(bytes("{\"orderId\":3}"));
+        age(expired, Duration.ofDays(20));
+        age(referenced, Duration.ofDays(20));
+
+        int deleted = store.purgeOlderThan(Duration.ofDays(14), Set.of(referenced));
+
+        assertEquals(1, deleted);
+        assertTrue(Files.notExists(pathOf(expired)));
+        assertTrue(Files.exists(pathOf(referenced)));
+        assertTrue(Files.exists(pathOf(recent)));
+    }
+}
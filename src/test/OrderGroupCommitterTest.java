@@ -0,0 +1,107 @@
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.domain.model.Order;
+import com.example.outbox.service.OrderGroupCommitter;
+import com.example.outbox.service.OrderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderGroupCommitterTest {
+
+    @Mock
+    private OrderService orderService;
+
+    private OrderGroupCommitter committer;
+
+    @BeforeEach
+    public void setUp() {
+        OutboxProperties properties = new OutboxProperties();
+        properties.getGroupCommit().setEnabled(true);
+        // Finestra ampia: le richieste del test finiscono sicuramente nello stesso gruppo
+        properties.getGroupCommit().setWindow(Duration.ofMillis(200));
+        properties.getGroupCommit().setMaxBatchSize(10);
+        committer = new OrderGroupCommitter(orderService, properties);
+        committer.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        committer.stop();
+    }
+
+    private static Order order(String customer) {
+        Order order = new Order();
+        order.setCustomerName(customer);
+        return order;
+    }
+
+    @Test
+    public void submit_shouldCommitConcurrentRequestsInOneTransaction() throws Exception {
+        when(orderService.createOrders(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        Order first = order("A");
+        Order second = order("B");
+        Order third = order("C");
+
+        CompletableFuture<Order> a = committer.submit(first);
+        CompletableFuture<Order> b = committer.submit(second);
+        CompletableFuture<Order> c = committer.submit(third);
+
+        assertEquals(first, a.get(5, TimeUnit.SECONDS));
+        assertEquals(second, b.get(5, TimeUnit.SECONDS));
+        assertEquals(third, c.get(5, TimeUnit.SECONDS));
+        verify(orderService, times(1)).createOrders(List.of(first, second, third));
+    }
+
+    @Test
+    public void submit_shouldRetryIndividuallyWhenGroupFails() throws Exception {
+        Order valid = order("A");
+        Order invalid = order("B");
+        when(orderService.createOrders(anyList())).thenThrow(new IllegalStateException("constraint violation"));
+        when(orderService.createOrder(same(valid))).thenReturn(valid);
+        when(orderService.createOrder(same(invalid))).thenThrow(new IllegalArgumentException("invalid order"));
+
+        CompletableFuture<Order> ok = committer.submit(valid);
+        CompletableFuture<Order> failed = committer.submit(invalid);
+
+        // L'ordine non valido fallisce da solo, l'altro viene salvato
+        assertEquals(valid, ok.get(5, TimeUnit.SECONDS));
+        assertThrows(Exception.class, () -> failed.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stop_shouldWaitForTheGroupInProgress() throws Exception {
+        CountDownLatch committing = new CountDownLatch(1);
+        when(orderService.createOrders(anyList())).thenAnswer(invocation -> {
+            committing.countDown();
+            Thread.sleep(300);
+            return invocation.getArgument(0);
+        });
+
+        CompletableFuture<Order> result = committer.submit(order("A"));
+        assertTrue(committing.await(5, TimeUnit.SECONDS));
+        committer.stop();
+
+        // La transazione in corso non viene interrotta: il chiamante riceve il suo ordine
+        assertTrue(result.isDone());
+        assertEquals("A", result.join().getCustomerName());
+    }
+}
@@ -1,8 +1,11 @@
+import com.example.outbox.claimcheck.ClaimCheck;
 import com.example.outbox.domain.model.Order;
 import com.example.outbox.domain.repository.OrderRepository;
 import com.example.outbox.outbox.model.OutboxEvent;
 import com.example.outbox.outbox.repository.OutboxRepository;
+import com.example.outbox.outbox.service.OutboxDirectDispatcher;
 import com.example.outbox.service.OrderService;
+import jakarta.persistence.EntityManager;
 
 @ExtendWith(MockitoExtension.class)
 public class OrderServiceTest {
@@ -13,6 +16,16 @@ public class OrderServiceTest {
     @Mock
     private OutboxRepository outboxRepository;
 
+    @Mock
+    private OutboxDirectDispatcher directDispatcher;
+
+    @Mock
+    private EntityManager entityManager;
+
+    // Senza stub offload() restituisce null: i payload restano nell'outbox
+    @Mock
+    private ClaimCheck claimCheck;
+
     @Spy
     private EventSerializer eventSerializer = new EventSerializer();
 
@@ -30,7 +43,6 @@ public class OrderServiceTest {
         item.setProductName("Test Product");
         item.setQuantity(2);
         item.setPrice(new BigDecimal("50.00"));
-        item.setOrder(order);
 
         order.getItems().add(item);
 
@@ -47,8 +59,9 @@ public class OrderServiceTest {
         assertEquals(1L, result.getId());
         assertEquals("Test Customer", result.getCustomerName());
 
-        // Verifica che l'ordine sia stato salvato
+        // Verifica che l'ordine sia stato salvato, con le righe collegate all'ordine
         verify(orderRepository).save(order);
+        assertSame(order, item.getOrder());
 
         // Verifica che l'evento sia stato salvato nella tabella outbox
         ArgumentCaptor<OutboxEvent> outboxEventCaptor = ArgumentCaptor.forClass(OutboxEvent.class);
@@ -65,5 +78,79 @@ public class OrderServiceTest {
         assertTrue(payload.contains("Test Customer"));
         assertTrue(payload.contains("100.00"));
         assertTrue(payload.contains("Test Product"));
+
+        // Verifica che l'evento sia stato passato al percorso di pubblicazione diretta
+        verify(directDispatcher).dispatchAfterCommit(capturedEvent);
+    }
+
+    @Test
+    public void testCreateOrders_shouldSaveOrdersAndOutboxEventsInBatch() {
+        // Arrange
+        List<Order> orders = new ArrayList<>();
+        for (long i = 1; i <= 3; i++) {
+            Order order = new Order();
+            order.setId(i);
+            order.setCustomerName("Customer " + i);
+            order.setTotalAmount(new BigDecimal("10.00"));
+
+            OrderItem item = new OrderItem();
+            item.setProductName("Product " + i);
+            item.setQuantity(1);
+            item.setPrice(new BigDecimal("10.00"));
+            order.getItems().add(item);
+            orders.add(order);
+        }
+
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<Order> result = orderService.createOrders(orders);
+
+        // Assert
+        assertEquals(3, result.size());
+
+        // Le righe vengono collegate al proprio ordine prima del salvataggio
+        assertSame(orders.get(0), orders.get(0).getItems().get(0).getOrder());
+
+        // Un solo saveAll per gli ordini e uno per gli eventi, poi flush e clear del contesto
+        ArgumentCaptor<List<OutboxEvent>> outboxEventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(outboxRepository).saveAll(outboxEventsCaptor.capture());
+        verify(entityManager).flush();
+        verify(entityManager).clear();
+
+        List<OutboxEvent> capturedEvents = outboxEventsCaptor.getValue();
+        assertEquals(3, capturedEvents.size());
+        assertEquals("2", capturedEvents.get(1).getAggregateId());
+        assertTrue(capturedEvents.get(2).getPayload().contains("Product 3"));
+
+        verify(directDispatcher, times(3)).dispatchAfterCommit(any(OutboxEvent.class));
+    }
+
+    @Test
+    public void testExportOrders_shouldDetachEachOrderAfterConsumingIt() {
+        // Arrange
+        Order first = new Order();
+        first.setId(1L);
+        Order second = new Order();
+        second.setId(2L);
+        when(orderRepository.streamAllWithItems()).thenReturn(Stream.of(first, second));
+
+        // Act
+        List<Long> exported = new ArrayList<>();
+        orderService.exportOrders(order -> exported.add(order.getId()));
+
+        // Assert: ordini passati in ordine e staccati dal contesto, che non cresce con l'export
+        assertEquals(List.of(1L, 2L), exported);
+        InOrder inOrder = inOrder(entityManager);
+        inOrder.verify(entityManager).detach(first);
+        inOrder.verify(entityManager).detach(second);
+    }
+
+    @Test
+    public void testFindOrdersAfter_shouldSkipFetchQueryWhenPageIsEmpty() {
+        when(orderRepository.findIdsAfter(10L, 100)).thenReturn(List.of());
+
+        assertTrue(orderService.findOrdersAfter(10L, 100).isEmpty());
+        verify(orderRepository, never()).findWithItemsByIdIn(anyList());
     }
 }
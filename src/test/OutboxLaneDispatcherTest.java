@@ -0,0 +1,116 @@
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.MessagePublisher;
+import com.example.outbox.outbox.model.OutboxEvent;
+import com.example.outbox.outbox.service.OutboxLaneDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutboxLaneDispatcherTest {
+
+    private static OutboxLaneDispatcher dispatcher(MessagePublisher publisher, int maxInFlight) {
+        OutboxProperties properties = new OutboxProperties();
+        properties.getRelay().setLanes(1);
+        properties.getRelay().setMaxInFlight(maxInFlight);
+        return new OutboxLaneDispatcher(publisher, properties, new SimpleMeterRegistry());
+    }
+
+    private static OutboxEvent event(String aggregateId) {
+        return new OutboxEvent("Order", aggregateId, "OrderCreated", "{}");
+    }
+
+    @Test
+    public void dispatch_shouldNotSendLaterEventsOfAFailedAggregate() {
+        OutboxEvent a1 = event("1");
+        OutboxEvent b1 = event("2");
+        OutboxEvent a2 = event("1");
+        List<String> sent = new CopyOnWriteArrayList<>();
+        // Blocchi da un evento: l'errore di a1 è noto prima di inviare a2
+        OutboxLaneDispatcher dispatcher = dispatcher(message -> {
+            sent.add(message.messageId());
+            return message.messageId().equals(a1.getId().toString())
+                    ? CompletableFuture.failedFuture(new IllegalStateException("record too large"))
+                    : CompletableFuture.completedFuture(null);
+        }, 1);
+
+        OutboxLaneDispatcher.Dispatch dispatch = dispatcher.dispatch(List.of(a1, b1, a2));
+        dispatch.completion().join();
+
+        assertEquals(List.of(a1.getId().toString(), b1.getId().toString()), sent);
+        assertEquals(List.of(b1.getId()), dispatch.drainAcked());
+        assertEquals(Set.of(a1.getId()), dispatch.failures().keySet());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void dispatch_shouldNotAckLaterEventWhenEarlierEventFailsAfterIt() throws Exception {
+        OutboxEvent a1 = event("1");
+        OutboxEvent b1 = event("2");
+        OutboxEvent a2 = event("1");
+        Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+        CountDownLatch allSent = new CountDownLatch(3);
+        OutboxLaneDispatcher dispatcher = dispatcher(message -> {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            pending.put(message.messageId(), result);
+            allSent.countDown();
+            return result;
+        }, 16);
+
+        OutboxLaneDispatcher.Dispatch dispatch = dispatcher.dispatch(List.of(a1, b1, a2));
+        assertTrue(allSent.await(5, TimeUnit.SECONDS));
+
+        // L'ack di a2 arriva prima dell'esito di a1: viene trattenuto
+        pending.get(a2.getId().toString()).complete(null);
+        pending.get(b1.getId().toString()).complete(null);
+        assertEquals(List.of(b1.getId()), dispatch.drainAcked());
+
+        pending.get(a1.getId().toString()).completeExceptionally(new IllegalStateException("delivery timeout"));
+        dispatch.completion().get(5, TimeUnit.SECONDS);
+
+        // a2 resta nell'outbox per essere ripubblicato dopo a1, senza contare come fallimento
+        assertTrue(dispatch.drainAcked().isEmpty());
+        assertEquals(Set.of(a1.getId()), dispatch.failures().keySet());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void cancel_shouldStopSendingAndCompleteWhenInFlightSendsEnd() throws Exception {
+        OutboxEvent a1 = event("1");
+        OutboxEvent b1 = event("2");
+        Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+        CountDownLatch firstSent = new CountDownLatch(1);
+        OutboxLaneDispatcher dispatcher = dispatcher(message -> {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            pending.put(message.messageId(), result);
+            firstSent.countDown();
+            return result;
+        }, 1);
+
+        OutboxLaneDispatcher.Dispatch dispatch = dispatcher.dispatch(List.of(a1, b1));
+        assertTrue(firstSent.await(5, TimeUnit.SECONDS));
+
+        // Timeout del poller: il lotto viene annullato mentre a1 è ancora in volo
+        dispatch.cancel();
+        assertFalse(dispatch.completion().isDone());
+
+        pending.get(a1.getId().toString()).complete(null);
+        dispatch.completion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(Set.of(a1.getId().toString()), pending.keySet());
+        assertEquals(List.of(a1.getId()), dispatch.drainAcked());
+        assertTrue(dispatch.failures().isEmpty());
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,105 @@
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.outbox.model.OutboxEvent;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import com.example.outbox.outbox.service.OutboxLeaseManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ContextConfiguration(classes = OutboxLeaseManagerTest.LeaseTestConfig.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:leasetest;MODE=PostgreSQL",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "outbox.relay.mode=CLUSTERED",
+        "outbox.relay.node-id=node-a"
+})
+public class OutboxLeaseManagerTest {
+
+    @Configuration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = OutboxEvent.class)
+    @EnableJpaRepositories(basePackageClasses = OutboxRepository.class)
+    @EnableConfigurationProperties(OutboxProperties.class)
+    @Import(OutboxLeaseManager.class)
+    static class LeaseTestConfig {
+    }
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private OutboxLeaseManager leaseManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void claimBatch_shouldReturnDisjointBatchesAndReclaimExpiredLeases() {
+        outboxRepository.deleteAll();
+        outboxRepository.save(new OutboxEvent("Order", "1", "OrderCreated", "{}"));
+        outboxRepository.save(new OutboxEvent("Order", "2", "OrderCreated", "{}"));
+        outboxRepository.save(new OutboxEvent("Order", "3", "OrderCreated", "{}"));
+
+        // Il primo claim prende due righe, il secondo solo quella rimasta libera
+        List<OutboxEvent> first = leaseManager.claimBatch(LocalDateTime.now().plusSeconds(1), 2);
+        List<OutboxEvent> second = leaseManager.claimBatch(LocalDateTime.now().plusSeconds(1), 10);
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+        assertTrue(leaseManager.claimBatch(LocalDateTime.now().plusSeconds(1), 10).isEmpty());
+
+        // Simula il crash del nodo: i lease scadono e le righe tornano reclamabili
+        jdbcTemplate.update("UPDATE outbox SET lease_until = DATEADD('MINUTE', -1, CURRENT_TIMESTAMP)");
+        assertEquals(3, leaseManager.claimBatch(LocalDateTime.now().plusSeconds(1), 10).size());
+    }
+
+    @Test
+    public void claimBatch_shouldSkipAggregatesWithActiveLease() {
+        outboxRepository.deleteAll();
+        outboxRepository.save(new OutboxEvent("Order", "1", "OrderCreated", "{}"));
+
+        assertEquals(1, leaseManager.claimBatch(LocalDateTime.now().plusSeconds(1), 10).size());
+
+        // Un nuovo evento dello stesso aggregato resta in attesa finché il lease è attivo
+        outboxRepository.save(new OutboxEvent("Order", "1", "OrderUpdated", "{}"));
+        assertTrue(leaseManager.claimBatch(LocalDateTime.now().plusSeconds(1), 10).isEmpty());
+    }
+
+    @Test
+    public void claimBatch_shouldHoldBackAggregatesWaitingForRetry() {
+        outboxRepository.deleteAll();
+        outboxRepository.save(new OutboxEvent("Order", "1", "OrderCreated", "{}"));
+        outboxRepository.save(new OutboxEvent("Order", "1", "OrderUpdated", "{}"));
+        outboxRepository.save(new OutboxEvent("Order", "2", "OrderCreated", "{}"));
+
+        // Il primo evento dell'ordine 1 è fallito ed è in backoff: l'evento successivo
+        // dello stesso ordine non deve superarlo, l'ordine 2 prosegue
+        jdbcTemplate.update("UPDATE outbox SET created_at = DATEADD('MINUTE', -1, CURRENT_TIMESTAMP), " +
+                "attempts = 1, next_attempt_at = DATEADD('MINUTE', 1, CURRENT_TIMESTAMP) " +
+                "WHERE aggregate_id = '1' AND event_type = 'OrderCreated'");
+
+        List<OutboxEvent> claimed = leaseManager.claimBatch(LocalDateTime.now().plusSeconds(1), 10);
+        assertEquals(1, claimed.size());
+        assertEquals("2", claimed.get(0).getAggregateId());
+    }
+}
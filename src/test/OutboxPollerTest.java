@@ -0,0 +1,135 @@
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.EventSerializer;
+import com.example.outbox.messagging.MessagePublisher;
+import com.example.outbox.messagging.OutboundMessage;
+import com.example.outbox.outbox.model.OutboxEvent;
+import com.example.outbox.outbox.repository.OutboxRepository;
+import com.example.outbox.outbox.service.OutboxLaneDispatcher;
+import com.example.outbox.outbox.service.OutboxLeaseManager;
+import com.example.outbox.outbox.service.OutboxPoller;
+import com.example.outbox.outbox.service.OutboxRetryHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ContextConfiguration(classes = OutboxPollerTest.PollerTestConfig.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pollertest;MODE=PostgreSQL",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "outbox.relay.lanes=1",
+        "outbox.relay.mark-batch-size=1",
+        "outbox.relay.ack-timeout=10s"
+})
+public class OutboxPollerTest {
+
+    @Configuration
+    @EntityScan(basePackageClasses = OutboxEvent.class)
+    @EnableJpaRepositories(basePackageClasses = OutboxRepository.class)
+    @EnableConfigurationProperties(OutboxProperties.class)
+    @Import({OutboxPoller.class, OutboxLeaseManager.class, OutboxLaneDispatcher.class, OutboxRetryHandler.class})
+    static class PollerTestConfig {
+
+        @Bean
+        public EventSerializer eventSerializer() {
+            return new EventSerializer();
+        }
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public HoldingPublisher messagePublisher() {
+            return new HoldingPublisher();
+        }
+    }
+
+    // Conferma subito gli invii, tranne quelli dell'aggregato "held" che restano in volo
+    static class HoldingPublisher implements MessagePublisher {
+        private final Map<String, CompletableFuture<Void>> held = new ConcurrentHashMap<>();
+
+        @Override
+        public CompletableFuture<Void> publish(OutboundMessage message) {
+            if (!message.aggregateId().equals("held")) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return held.computeIfAbsent(message.messageId(), id -> new CompletableFuture<>());
+        }
+    }
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private OutboxPoller outboxPoller;
+
+    @Autowired
+    private HoldingPublisher publisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private boolean isProcessed(UUID id) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT processed FROM outbox WHERE id = ?", Boolean.class, id));
+    }
+
+    @Test
+    public void pollAndPublish_shouldCommitAckedEventsBeforeTheCycleEnds() throws Exception {
+        outboxRepository.deleteAll();
+        OutboxEvent acked = outboxRepository.save(new OutboxEvent("Order", "1", "OrderCreated", "{}"));
+        OutboxEvent held = outboxRepository.save(new OutboxEvent("Order", "held", "OrderCreated", "{}"));
+
+        ExecutorService relay = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> cycle = relay.submit(() -> outboxPoller.pollAndPublish(10));
+
+            // L'evento confermato è visibile come processato da un'altra connessione
+            // mentre il ciclo è ancora in attesa dell'ack dell'altro evento
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!isProcessed(acked.getId()) && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(isProcessed(acked.getId()));
+            assertFalse(cycle.isDone());
+            assertFalse(isProcessed(held.getId()));
+
+            publisher.held.computeIfAbsent(held.getId().toString(), id -> new CompletableFuture<>()).complete(null);
+
+            assertEquals(2, cycle.get(5, TimeUnit.SECONDS));
+            assertTrue(isProcessed(held.getId()));
+        } finally {
+            relay.shutdownNow();
+        }
+    }
+}
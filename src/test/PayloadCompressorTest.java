@@ -0,0 +1,41 @@
+import com.example.outbox.util.compression.CompressionAlgorithm;
+import com.example.outbox.util.compression.PayloadCompressor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PayloadCompressorTest {
+
+    private static String largePayload() {
+        StringBuilder json = new StringBuilder("{\"orderId\":1,\"items\":[");
+        for (int i = 0; i < 200; i++) {
+            json.append("{\"productName\":\"Product ").append(i).append("\",\"quantity\":1,\"price\":10.00},");
+        }
+        return json.append("{}]}").toString();
+    }
+
+    @Test
+    public void compress_shouldRoundTripWithEveryAlgorithm() {
+        String json = largePayload();
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        for (CompressionAlgorithm algorithm : CompressionAlgorithm.values()) {
+            byte[] compressed = PayloadCompressor.compress(bytes, algorithm);
+            assertEquals(json, PayloadCompressor.decompress(compressed, algorithm));
+            if (algorithm != CompressionAlgorithm.NONE) {
+                assertTrue(compressed.length < bytes.length);
+            }
+        }
+    }
+
+    @Test
+    public void algorithmFor_shouldLeavePayloadsBelowThresholdUncompressed() {
+        PayloadCompressor compressor = new PayloadCompressor(CompressionAlgorithm.LZ4, 1024);
+
+        assertEquals(CompressionAlgorithm.NONE, compressor.algorithmFor("{\"orderId\":1}".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(CompressionAlgorithm.LZ4, compressor.algorithmFor(largePayload().getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,53 @@
+import com.example.outbox.config.OutboxProperties;
+import com.example.outbox.messagging.OutboundMessage;
+import com.example.outbox.messagging.RoutingKey;
+import com.example.outbox.messagging.TopicRouter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TopicRouterTest {
+
+    private static OutboxProperties.Routing.Route route(String aggregateType, String eventType, String topic, RoutingKey key) {
+        OutboxProperties.Routing.Route route = new OutboxProperties.Routing.Route();
+        route.setAggregateType(aggregateType);
+        route.setEventType(eventType);
+        route.setTopic(topic);
+        route.setKey(key);
+        return route;
+    }
+
+    @Test
+    public void route_shouldUsePluralSimpleNameWithoutRules() {
+        TopicRouter router = new TopicRouter(new OutboxProperties());
+
+        TopicRouter.Route route = router.route("com.example.outbox.domain.model.Order", "OrderCreated");
+
+        // Non più "com.example.outbox.domain.model.orders": il consumer ascolta "orders"
+        assertEquals("orders", route.topic());
+        assertEquals(RoutingKey.AGGREGATE_ID, route.key());
+        assertNull(route.partition());
+    }
+
+    @Test
+    public void route_shouldPreferEventRuleAndMatchSimpleAggregateName() {
+        OutboxProperties properties = new OutboxProperties();
+        properties.getRouting().getRoutes().add(route("Order", null, "orders-v2", null));
+        properties.getRouting().getRoutes().add(route("Order", "OrderAudited", "orders-audit", RoutingKey.MESSAGE_ID));
+        TopicRouter router = new TopicRouter(properties);
+
+        OutboundMessage created = new OutboundMessage("m-1", "OrderCreated", "com.example.outbox.domain.model.Order",
+                "42", "{}", null, 0L);
+        OutboundMessage audited = new OutboundMessage("m-2", "OrderAudited", "com.example.outbox.domain.model.Order",
+                "42", "{}", null, 0L);
+
+        assertEquals("orders-v2", router.route(created).topic());
+        assertEquals("42", router.route(created).keyOf(created));
+        assertEquals("orders-audit", router.route(audited).topic());
+        assertEquals("m-2", router.route(audited).keyOf(audited));
+        // La tabella risolta viene riusata: nessuna nuova regola alla seconda richiesta
+        assertSame(router.route(created), router.route(created));
+    }
+}
@@ -0,0 +1,43 @@
+import com.example.outbox.util.id.UuidV7Generator;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UuidV7GeneratorTest {
+
+    private final UuidV7Generator generator = new UuidV7Generator();
+
+    @Test
+    public void nextId_shouldProduceVersion7RfcVariantIds() {
+        UUID id = generator.nextId();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+    }
+
+    @Test
+    public void nextId_shouldBeMonotonicWithinTheSameMillisecond() {
+        UUID previous = generator.nextId();
+
+        // Molti più ID di quanti ne stiano in un millisecondo con il contatore a 12 bit
+        for (int i = 0; i < 100_000; i++) {
+            UUID current = generator.nextId();
+            assertTrue(Long.compareUnsigned(current.getMostSignificantBits(), previous.getMostSignificantBits()) > 0,
+                    "ID non monotono: " + previous + " -> " + current);
+            previous = current;
+        }
+    }
+
+    @Test
+    public void nextId_shouldEmbedCurrentTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = generator.nextId();
+        long after = System.currentTimeMillis();
+
+        long timestamp = id.getMostSignificantBits() >>> 16;
+        assertTrue(timestamp >= before && timestamp <= after + 1);
+    }
+}